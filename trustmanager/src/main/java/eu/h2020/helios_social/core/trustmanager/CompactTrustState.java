@@ -0,0 +1,115 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import eu.h2020.helios_social.core.contextualegonetwork.Node;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class holds, in a compact form, the trust state of a context that has been evicted from
+ * memory by the Trust Manager. The latest trust scores are stored in two parallel arrays, sorted
+ * by alter identifier, so that the state can be queried and restored without keeping the
+ * context-related thread and its structures alive. The time of the last update of the scores
+ * is kept along with them, so that their staleness is preserved across the eviction.
+ *
+ * @author Barbara Guidi (guidi@di.unipi.it)
+ * @author Laura Ricci (ricci@di.unipi.it)
+ * @author Andrea Michienzi (andrea.michienzi@di.unipi.it)
+ * @author Giulia Fois (g.fois5@studenti.unipi.it)
+ * @author Fabrizio Baiardi (f.baiardi@unipi.it)
+ */
+public class CompactTrustState {
+
+    /**
+     * Identifiers of the alters, in ascending order
+     */
+    private final String[] alterIds;
+    /**
+     * Latest trust scores, where the i-th score refers to the i-th alter identifier
+     */
+    private final float[] trustValues;
+    /**
+     * Time (in milliseconds) at which the trust scores were last computed, or 0 if they never were
+     */
+    private final long updateTime;
+
+    /**
+     * Constructor method. It builds the compact form of a trust state
+     * @param trustMap Structure that maps each alter to its latest computed trust value
+     * @param updateTime The time (in milliseconds) at which the trust scores were last computed
+     */
+    public CompactTrustState(Map<Node, Float> trustMap, long updateTime) {
+        alterIds = new String[trustMap.size()];
+        int idx = 0;
+        for(Node n: trustMap.keySet()) alterIds[idx++] = n.getId();
+        Arrays.sort(alterIds);
+
+        trustValues = new float[alterIds.length];
+        for(Map.Entry<Node, Float> entry: trustMap.entrySet())
+            trustValues[Arrays.binarySearch(alterIds, entry.getKey().getId())] = entry.getValue();
+        this.updateTime = updateTime;
+    }
+
+    /**
+     * Constructor method. It builds the compact form of a trust state from the alter identifiers
+     * @param alterIds The identifiers of the alters, in any order
+     * @param trustValues The trust scores, where the i-th score refers to the i-th alter identifier
+     * @param updateTime The time (in milliseconds) at which the trust scores were last computed
+     */
+    protected CompactTrustState(String[] alterIds, float[] trustValues, long updateTime) {
+        this.alterIds = alterIds.clone();
+        Arrays.sort(this.alterIds);
+
+        this.trustValues = new float[alterIds.length];
+        for(int i = 0; i < alterIds.length; i++)
+            this.trustValues[Arrays.binarySearch(this.alterIds, alterIds[i])] = trustValues[i];
+        this.updateTime = updateTime;
+    }
+
+    /**
+     * @param alter The alter for which the check is made
+     * @return true if a trust score towards the alter is stored, false otherwise
+     */
+    public boolean contains(Node alter) {
+        return contains(alter.getId());
+    }
+
+    /**
+     * @param alterId The identifier of the alter for which the check is made
+     * @return true if a trust score towards the alter is stored, false otherwise
+     */
+    public boolean contains(String alterId) {
+        return Arrays.binarySearch(alterIds, alterId) >= 0;
+    }
+
+    /**
+     * @param alter The alter towards which the trust score is requested
+     * @return The stored trust score towards the alter, or NaN if no score is stored for it
+     */
+    public float getTrust(Node alter) {
+        return getTrust(alter.getId());
+    }
+
+    /**
+     * @param alterId The identifier of the alter towards which the trust score is requested
+     * @return The stored trust score towards the alter, or NaN if no score is stored for it
+     */
+    public float getTrust(String alterId) {
+        int idx = Arrays.binarySearch(alterIds, alterId);
+        return idx >= 0 ? trustValues[idx] : Float.NaN;
+    }
+
+    /**
+     * @return The time (in milliseconds) at which the trust scores were last computed, or 0 if they never were
+     */
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * @return The number of alters whose trust score is stored
+     */
+    public int size() {
+        return alterIds.length;
+    }
+}
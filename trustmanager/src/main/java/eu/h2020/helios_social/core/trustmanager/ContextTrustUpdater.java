@@ -5,9 +5,14 @@ import eu.h2020.helios_social.core.contextualegonetwork.Node;
 import eu.h2020.helios_social.core.contextualegonetwork.Edge;
 import eu.h2020.helios_social.modules.neurobehaviour.NeurobehaviourListener;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -54,6 +59,65 @@ public class ContextTrustUpdater extends Thread {
         }
     }
 
+    /**
+     * Class that holds the scores of the trust model parameters last computed towards an alter,
+     * so that the trust score can be recombined when the weights of the parameters change. The
+     * instance of each alter is updated in place at every computation of its trust score.
+     */
+    static class TrustFactors {
+        /**
+         * Profile Similarity score
+         */
+        private float profileSimilarity;
+        /**
+         * Common Friends score
+         */
+        private float commonFriends;
+        /**
+         * Sentiment Analysis score
+         */
+        private float sentimentAnalysis;
+        /**
+         * Proximity score
+         */
+        private float proximity;
+        /**
+         * True if the scores make up an initial trust score, false otherwise
+         */
+        private boolean initial;
+        /**
+         * Time (in milliseconds) at which the scores were computed
+         */
+        private long computedAt;
+
+        /**
+         * Replaces the parameter scores with newly computed ones
+         * @param profileSimilarity The Profile Similarity score
+         * @param commonFriends The Common Friends score
+         * @param sentimentAnalysis The Sentiment Analysis score
+         * @param proximity The Proximity score
+         * @param initial True if the scores make up an initial trust score, false otherwise
+         */
+        void set(float profileSimilarity, float commonFriends, float sentimentAnalysis,
+                 float proximity, boolean initial) {
+            this.profileSimilarity = profileSimilarity;
+            this.commonFriends = commonFriends;
+            this.sentimentAnalysis = sentimentAnalysis;
+            this.proximity = proximity;
+            this.initial = initial;
+            computedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @param w The weights of the trust model parameters
+         * @return The trust score obtained by combining the parameter scores with the weights
+         */
+        float score(TrustWeights w) {
+            if(initial) return w.initialTrust(profileSimilarity, commonFriends, proximity);
+            return w.trust(commonFriends, sentimentAnalysis, proximity);
+        }
+    }
+
     /**
      * Reference to the context this thread is related to
      */
@@ -62,6 +126,15 @@ public class ContextTrustUpdater extends Thread {
      * Structure that maps each alter to its latest computed trust value
      */
     private HashMap<Node, Float> trustMap;
+    /**
+     * Structure that maps each alter to the parameter scores its latest trust value was computed from
+     */
+    private HashMap<Node, TrustFactors> factorMap;
+    /**
+     * Structure that maps each alter to the on-demand computation of its trust score that is
+     * in progress, so that concurrent requests for the same alter share a single computation
+     */
+    private ConcurrentHashMap<Node, FutureTask<Float>> pendingComputations;
     /**
      * Reference to the NeuroBehavioural Listener, which is exploited to
      * call the NeuroBehavioural Module whenever the Sentiment Analysis
@@ -79,19 +152,56 @@ public class ContextTrustUpdater extends Thread {
      * Boolean variable that is true if the related context is active
      * and false otherwise
      */
-    private boolean active;
+    private volatile boolean active;
     /**
      * Structure that translates the Sentiment Analysis classes given by the
      * NeuroBehavioural Module into float scores, that are put together
-     * to compute the trust-related Sentiment Analysis score
+     * to compute the trust-related Sentiment Analysis score. It is shared
+     * by all the context-related threads
      */
-    private Map<String, Float> emotionHashMap;
+    private static final Map<String, Float> emotionHashMap = new HashMap<>();
+
+    static {
+        emotionHashMap.put("Attention_High", 1.f);
+        emotionHashMap.put("Attention_Medium", 0.66f);
+        emotionHashMap.put("Attention_Low", 0.33f);
+        emotionHashMap.put("PositivePositive", 1.f);
+        emotionHashMap.put("PositiveNegative", 0.75f);
+        emotionHashMap.put("NegativeNegative", 0.5f);
+        emotionHashMap.put("NegativePositive", 0.25f);
+    }
+
     /**
      * Boolean variable that becomes true if and only if the related context
      * is removed from the Contextual Ego Network, and therefore this thread
      * ends its life cycle
      */
-    private boolean terminate = false;
+    private volatile boolean terminate = false;
+    /**
+     * Boolean variable that becomes true once the trust scores towards all the
+     * alters in the context have been computed for the first time. Until then,
+     * the trust state of the context is not materialized
+     */
+    private volatile boolean initialized = false;
+    /**
+     * Trust state of the context as it was when the context was evicted from memory,
+     * or null if there is no such state. It is used to restore the trust scores when
+     * the trust state is materialized again
+     */
+    private CompactTrustState evictedState;
+    /**
+     * Time (in milliseconds) at which the trust scores of the context were last computed
+     */
+    private volatile long lastUpdateTime;
+    /**
+     * Duration (in nanoseconds) of the last update of the trust scores of the context,
+     * used by the scheduler to estimate the cost of the next one
+     */
+    private volatile long lastUpdateDuration;
+    /**
+     * Number of alters added to the context since the last update of the trust scores
+     */
+    private volatile int dirtyAlters;
 
     /**
      * Constructor method. It creates a thread instance related to the
@@ -99,47 +209,117 @@ public class ContextTrustUpdater extends Thread {
      * @param c The context this thread is related to
      */
     public ContextTrustUpdater(Context c) {
-        emotionHashMap = new HashMap<>();
-        emotionHashMap.put("Attention_High", 1.f);
-        emotionHashMap.put("Attention_Medium", 0.66f);
-        emotionHashMap.put("Attention_Low", 0.33f);
-        emotionHashMap.put("PositivePositive", 1.f);
-        emotionHashMap.put("PositiveNegative", 0.75f);
-        emotionHashMap.put("NegativeNegative", 0.5f);
-        emotionHashMap.put("NegativePositive", 0.25f);
-
         context = c;
+        trustMap = new HashMap<>();
+        factorMap = new HashMap<>();
+        pendingComputations = new ConcurrentHashMap<>();
         nBL = new NeurobehaviourListener();
         contextLock = new ReentrantLock();
         contextCondVar = contextLock.newCondition();
         active = true;
     }
 
+    /**
+     * Constructor method. It creates a thread instance related to a context that
+     * was previously evicted from memory, whose trust scores are restored from
+     * the compact state when the trust state is materialized
+     * @param c The context this thread is related to
+     * @param state The compact trust state of the context, or null if there is none
+     */
+    public ContextTrustUpdater(Context c, CompactTrustState state) {
+        this(c);
+        evictedState = state;
+    }
+
     /**
      * Method that is executed when the Trust Manager calls the <i>start</i> method.
      * It is the main flow (??) of the thread, that computes trust scores for each
      * node in the related context in the latter's periods of activity.
      */
     public void run() {
-        trustMap = new HashMap<>();
-        ArrayList<Node> alters = context.getNodes();
-        for(Node n: alters) {
-            if(!n.equals(TrustManager.ego)) trustMap.put(n, initializeTrust(n));
+        initialize();
+
+        contextLock.lock();
+        try {
+            //When the budgeted scheduler is enabled, it takes over the updates of this context
+            while(!terminate && TrustManager.scheduler == null) {
+                while(!active && !terminate) contextCondVar.await();
+                if(terminate) break;
+                updateTrust();
+                //Waits deltaT before the next update; terminate() wakes the thread up earlier
+                contextCondVar.await(TrustManager.deltaT, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        finally {
+            contextLock.unlock();
         }
+    }
 
-        while(!terminate) {
-            contextLock.lock();
-            if(!active) {
-                try { contextCondVar.await(); }
-                catch (InterruptedException e) { contextLock.unlock(); }
+    /**
+     * Materializes the trust state of the context, by computing the initial trust score towards
+     * each alter in it. Only the first invocation has effect: the Trust Manager calls it lazily,
+     * either on the first request of a trust value or when the context is warmed up in background.
+     */
+    protected void initialize() {
+        if(initialized) return;
+        contextLock.lock();
+        try {
+            if(!initialized) {
+                ArrayList<Node> alters = context.getNodes();
+                for(Node n: alters) {
+                    if(!n.equals(TrustManager.ego) && trustMap.get(n) == null) {
+                        if(evictedState != null && evictedState.contains(n))
+                            trustMap.put(n, evictedState.getTrust(n));
+                        else
+                            trustMap.put(n, initializeTrust(n));
+                    }
+                }
+                //Restored scores keep the time at which they were computed, so that their staleness is not hidden
+                lastUpdateTime = evictedState != null ? evictedState.getUpdateTime() : System.currentTimeMillis();
+                evictedState = null;
+                initialized = true;
             }
-            updateTrust();
+        }
+        finally {
             contextLock.unlock();
-            try { Thread.sleep(TrustManager.deltaT); }
-            catch (InterruptedException e) { e.printStackTrace(); }
         }
     }
 
+    /**
+     * Builds the compact form of the trust state of the context, so that it can be
+     * kept after this thread is terminated.
+     * @return The compact trust state of the context
+     */
+    protected CompactTrustState compact() {
+        contextLock.lock();
+        try {
+            if(!initialized && evictedState != null) return evictedState;
+            return new CompactTrustState(trustMap, lastUpdateTime);
+        }
+        finally {
+            contextLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if there is a trust state to be kept when this thread is terminated, that is
+     *         if the trust state of the context has been materialized or restored from a compact
+     *         state, false otherwise
+     */
+    protected boolean hasTrustState() {
+        return initialized || evictedState != null;
+    }
+
+    /**
+     * @return true if the trust state of the context has already been materialized, false otherwise
+     */
+    protected boolean isInitialized() {
+        return initialized;
+    }
+
     /**
      * Method that is invoked every deltaT seconds to update the trust scores towards
      * all the nodes in the context. The trust scores are then saved on the Contextual Ego
@@ -147,11 +327,13 @@ public class ContextTrustUpdater extends Thread {
      */
     protected void updateTrust() {
 
+        long start = System.nanoTime();
         ArrayList<Node> alters = context.getNodes();
         for(Node n: alters) {
             if(!n.equals(TrustManager.ego)) {
                 float trustScore = 0.f;
-                if(trustMap.get(n) == null) {
+                Float oldScore = trustMap.get(n);
+                if(oldScore == null) {
                     trustScore = initializeTrust(n);
                     trustMap.put(n, trustScore);
                 }
@@ -163,9 +345,28 @@ public class ContextTrustUpdater extends Thread {
                 //Store of the trust score on the Contextual Ego Network
                 ComputedTrustValue ctv = context.getEdge(TrustManager.ego, n).getOrCreateInstance(ComputedTrustValue.class);
                 ctv.putTrustVal(trustScore);
+                logChange(n, oldScore, trustScore);
             }
         }
+        flushChanges();
 
+        lastUpdateTime = System.currentTimeMillis();
+        lastUpdateDuration = System.nanoTime() - start;
+        dirtyAlters = 0;
+    }
+
+    /**
+     * Method that is invoked by the budgeted scheduler to update the trust scores towards
+     * all the nodes in the context, if the context is still active.
+     */
+    protected void scheduledUpdate() {
+        contextLock.lock();
+        try {
+            if(active && !terminate) updateTrust();
+        }
+        finally {
+            contextLock.unlock();
+        }
     }
 
     /**
@@ -174,18 +375,65 @@ public class ContextTrustUpdater extends Thread {
      * @param alter The alter that has been newly added to the context this thread refers to
      */
     protected void newAlterTrust(Node alter) {
-        float trustScore = 0.f;
-        if(trustMap.get(alter) != null) {
-            TrustManager.eh.error(new IllegalArgumentException());
-            return;
+        contextLock.lock();
+        try {
+            //The initial trust score towards the alter will be computed along with
+            //the others when the context is materialized
+            if(!initialized) return;
+
+            float trustScore = 0.f;
+            if(trustMap.get(alter) != null) {
+                TrustManager.eh.error(ErrorHandler.ErrorType.DUPLICATE_ALTER);
+                return;
+            }
+            else {
+                trustScore = initializeTrust(alter);
+                trustMap.put(alter, trustScore);
+            }
+            //Store of the trust score on the Contextual Ego Network
+            ComputedTrustValue ctv = context.getEdge(TrustManager.ego, alter).getOrCreateInstance(ComputedTrustValue.class);
+            ctv.putTrustVal(trustScore);
+            logChange(alter, null, trustScore);
+            flushChanges();
+            dirtyAlters++;
         }
-        else {
-            trustScore = initializeTrust(alter);
-            trustMap.put(alter, trustScore);
+        finally {
+            contextLock.unlock();
+        }
+    }
+
+    /**
+     * This method appends a record to the trust change log, if the log is enabled and
+     * the trust score towards the alter has actually changed. A failure of the log, including
+     * the log being closed in the meanwhile, is reported without interrupting the update.
+     * @param alter The alter whose trust score has been stored
+     * @param oldScore The previous trust score towards the alter, or null if there was none
+     * @param newScore The trust score that has been stored
+     */
+    private void logChange(Node alter, Float oldScore, float newScore) {
+        TrustChangeLog changeLog = TrustManager.changeLog;
+        if(changeLog == null || (oldScore != null && oldScore == newScore)) return;
+        try {
+            changeLog.append(context.getSerializationId(), alter.getId(),
+                    oldScore == null ? Float.NaN : oldScore, newScore, System.currentTimeMillis());
+        }
+        catch(IOException e) {
+            TrustManager.eh.warning(e);
+        }
+    }
+
+    /**
+     * This method writes to disk the records appended to the trust change log, if the log is enabled.
+     */
+    private void flushChanges() {
+        TrustChangeLog changeLog = TrustManager.changeLog;
+        if(changeLog == null) return;
+        try {
+            changeLog.flush();
+        }
+        catch(IOException e) {
+            TrustManager.eh.warning(e);
         }
-        //Store of the trust score on the Contextual Ego Network
-        ComputedTrustValue ctv = context.getEdge(TrustManager.ego, alter).getOrCreateInstance(ComputedTrustValue.class);
-        ctv.putTrustVal(trustScore);
     }
 
     /**
@@ -194,8 +442,9 @@ public class ContextTrustUpdater extends Thread {
      * @return A float value, that is the initial trust score
      */
     protected float initializeTrust(Node alter) {
-        return TrustManager.ps_init_w * profileSimilarity(alter) + TrustManager.cf_init_w * commonFriends(alter)
-                + TrustManager.pr_init_w * proximity(alter);
+        TrustFactors factors = getFactors(alter);
+        factors.set(profileSimilarity(alter), commonFriends(alter), 0.f, proximity(alter), true);
+        return factors.score(TrustManager.weights);
     }
 
     /**
@@ -206,16 +455,59 @@ public class ContextTrustUpdater extends Thread {
      */
     private float computeTrust(Node alter) {
         if(alter == null) {
-            TrustManager.eh.error(new NullPointerException());
+            TrustManager.eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
             return 0.f;
         }
-        else if(isInContext(alter))
-            return  TrustManager.cf_w * commonFriends(alter) +
-                TrustManager.sa_w * sentimentAnalysis(alter) + TrustManager.pr_w * proximity(alter);
+        else if(isInContext(alter)) {
+            TrustFactors factors = getFactors(alter);
+            factors.set(0.f, commonFriends(alter), sentimentAnalysis(alter), proximity(alter), false);
+            return factors.score(TrustManager.weights);
+        }
         else
             return 0.f;
     }
 
+    /**
+     * @param alter An alter in the context
+     * @return The parameter scores of the alter, which are created the first time its trust score is computed
+     */
+    private TrustFactors getFactors(Node alter) {
+        TrustFactors factors = factorMap.get(alter);
+        if(factors == null) {
+            factors = new TrustFactors();
+            factorMap.put(alter, factors);
+        }
+        return factors;
+    }
+
+    /**
+     * This method recombines the latest parameter scores of each alter in the context with new
+     * weights, and stores the resulting trust scores. No parameter score is computed again. The alters
+     * whose trust score was restored from a compact state keep it up until their next update.
+     * @param w The new weights of the trust model parameters
+     */
+    protected void rescore(TrustWeights w) {
+        contextLock.lock();
+        try {
+            for(Map.Entry<Node, TrustFactors> entry: factorMap.entrySet()) {
+                Node n = entry.getKey();
+                Float oldScore = trustMap.get(n);
+                if(oldScore == null) continue;
+                float trustScore = entry.getValue().score(w);
+                trustMap.replace(n, trustScore);
+
+                //Store of the trust score on the Contextual Ego Network
+                ComputedTrustValue ctv = context.getEdge(TrustManager.ego, n).getOrCreateInstance(ComputedTrustValue.class);
+                ctv.putTrustVal(trustScore);
+                logChange(n, oldScore, trustScore);
+            }
+            flushChanges();
+        }
+        finally {
+            contextLock.unlock();
+        }
+    }
+
     /**
      * This method computes the Profile Similarity score, that is one of the parameters that
      * make up the initial trust score.
@@ -292,20 +584,156 @@ public class ContextTrustUpdater extends Thread {
 
     /**
      * This method returns the latest computed trust score towards an alter in
-     * this specific context.
+     * this specific context. If the trust state of the context has not been materialized
+     * yet, it is materialized first.
      * @param  alter The alter towards which the trust score is requested
-     * @return The last trust value that has been computed for an alter, or 0 if the alter doesn't exist
+     * @return The last trust value that has been computed for an alter, or NaN if the alter doesn't exist
      *         in this context or if alter is null
      */
     public float getTrust(Node alter) {
+        initialize();
+        contextLock.lock();
+        try {
+            return readTrust(alter);
+        }
+        finally {
+            contextLock.unlock();
+        }
+    }
+
+    /**
+     * This method returns the latest computed trust score towards an alter in this specific
+     * context, without materializing the trust state. It is used to read many trust scores
+     * while holding the lock of this thread, so that they are consistent with each other.
+     * @param  alter The alter towards which the trust score is requested
+     * @return The last trust value that has been computed for an alter, or NaN if the alter doesn't exist
+     *         in this context or if alter is null
+     */
+    protected float readTrust(Node alter) {
         if(alter == null) {
-            TrustManager.eh.error(new NullPointerException());
-            return 0.f;
+            TrustManager.eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return Float.NaN;
+        }
+        Float trustScore = trustMap.get(alter);
+        if(trustScore == null) {
+            TrustManager.eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
+            return Float.NaN;
+        }
+        return trustScore;
+    }
+
+    /**
+     * This method returns the latest computed trust scores towards all the alters in this specific
+     * context, without materializing the trust state. It is used while holding the lock of this
+     * thread, so that the scores are consistent with each other.
+     * @param alters The array that is filled with the alters, up to its length
+     * @param trustValues The array that is filled with the trust scores towards the alters, up to its length
+     * @return The number of alters in this context, that may exceed the length of the arrays
+     */
+    protected int readAllTrust(Node[] alters, float[] trustValues) {
+        int length = Math.min(alters.length, trustValues.length);
+        int idx = 0;
+        for(Map.Entry<Node, Float> entry: trustMap.entrySet()) {
+            if(idx == length) break;
+            alters[idx] = entry.getKey();
+            trustValues[idx++] = entry.getValue();
+        }
+        return trustMap.size();
+    }
+
+    /**
+     * This method returns a trust score towards an alter in this specific context that has been
+     * computed at most <i>maxStaleness</i> milliseconds ago. If the latest computed trust score is
+     * older, the trust score towards that alter alone is computed again. Concurrent requests for the
+     * same alter wait for the same computation.
+     * @param alter The alter towards which the trust score is requested
+     * @param maxStaleness The maximum age (in milliseconds) of the returned trust score
+     * @return The trust score towards the alter, or NaN if the alter doesn't exist in this context
+     *         or if alter is null
+     */
+    public float getTrust(Node alter, long maxStaleness) {
+        if(alter == null) {
+            TrustManager.eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return Float.NaN;
+        }
+        initialize();
+        Float trustScore;
+        boolean fresh;
+        contextLock.lock();
+        try {
+            trustScore = trustMap.get(alter);
+            fresh = trustScore != null && isFresh(alter, maxStaleness);
+        }
+        finally {
+            contextLock.unlock();
+        }
+        if(trustScore == null) {
+            TrustManager.eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
+            return Float.NaN;
+        }
+        if(fresh) return trustScore;
+
+        FutureTask<Float> computation = new FutureTask<>(() -> recomputeTrust(alter, maxStaleness));
+        FutureTask<Float> pending = pendingComputations.putIfAbsent(alter, computation);
+        if(pending == null) {
+            try {
+                computation.run();
+            }
+            finally {
+                pendingComputations.remove(alter, computation);
+            }
+            pending = computation;
+        }
+        try {
+            return pending.get();
+        }
+        catch(InterruptedException | ExecutionException e) {
+            TrustManager.eh.error(e);
+            return trustScore;
+        }
+    }
+
+    /**
+     * This method computes again the trust score towards a single alter, unless it has been
+     * refreshed in the meanwhile, and stores it.
+     * @param alter The alter towards which the trust score is computed
+     * @param maxStaleness The maximum age (in milliseconds) of a trust score that doesn't need
+     *                     to be computed again
+     * @return The trust score towards the alter, or NaN if it has been removed from the context in the meanwhile
+     */
+    private float recomputeTrust(Node alter, long maxStaleness) {
+        contextLock.lock();
+        try {
+            //The trust score may have been refreshed by a periodic update while waiting for the lock
+            Float oldScore = trustMap.get(alter);
+            if(oldScore == null) return Float.NaN;
+            if(isFresh(alter, maxStaleness)) return oldScore;
+
+            float trustScore = computeTrust(alter);
+            trustMap.replace(alter, trustScore);
+
+            //Store of the trust score on the Contextual Ego Network
+            ComputedTrustValue ctv = context.getEdge(TrustManager.ego, alter).getOrCreateInstance(ComputedTrustValue.class);
+            ctv.putTrustVal(trustScore);
+            logChange(alter, oldScore, trustScore);
+            flushChanges();
+            return trustScore;
+        }
+        finally {
+            contextLock.unlock();
         }
-        if(isInContext(alter))
-            return trustMap.get(alter);
-        else
-            return 0.f;
+    }
+
+    /**
+     * This method is called while holding the lock of this thread.
+     * @param alter The alter for which the check is made
+     * @param maxStaleness The maximum age (in milliseconds) of a fresh trust score
+     * @return true if the trust score towards the alter was computed at most <i>maxStaleness</i>
+     *         milliseconds ago, false otherwise
+     */
+    private boolean isFresh(Node alter, long maxStaleness) {
+        TrustFactors factors = factorMap.get(alter);
+        return factors != null && System.currentTimeMillis() - factors.computedAt <= maxStaleness;
     }
 
     /**
@@ -316,7 +744,7 @@ public class ContextTrustUpdater extends Thread {
      */
     private boolean isInContext(Node alter) {
         if(trustMap.get(alter) == null) {
-            TrustManager.eh.error(new IllegalArgumentException());
+            TrustManager.eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
             return false;
         }
         return true;
@@ -352,10 +780,69 @@ public class ContextTrustUpdater extends Thread {
         active = false;
     }
 
+    /**
+     * @return The context this thread is related to
+     */
+    protected Context getContext() {
+        return context;
+    }
+
+    /**
+     * @return The time (in milliseconds) at which the trust scores of the context were last computed,
+     *         or 0 if they have never been computed
+     */
+    protected long getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    /**
+     * @return The duration (in nanoseconds) of the last update of the trust scores of the context
+     */
+    protected long getLastUpdateDuration() {
+        return lastUpdateDuration;
+    }
+
+    /**
+     * @return The number of alters whose trust score is computed at each update, or the number
+     *         of nodes in the context if its trust state has not been materialized yet
+     */
+    protected int getAlterCount() {
+        return initialized ? trustMap.size() : context.getNodes().size();
+    }
+
+    /**
+     * @return The number of alters added to the context since the last update of the trust scores
+     */
+    protected int getDirtyAlters() {
+        return dirtyAlters;
+    }
+
+    /**
+     * @return true if the corresponding context is active, false otherwise
+     */
+    protected boolean isActive() {
+        return active;
+    }
+
     /**
      * This method sets the termination variable to true because the context that
-     * corresponds to this thread has been removed from the Contextual Ego Network.
-     * This thread will stop its life flow.
+     * corresponds to this thread has been removed from the Contextual Ego Network,
+     * or evicted from memory. Once this method returns, no further update of the trust
+     * scores is started. If the thread is waiting on the condition variable, either because
+     * the context is inactive or between two updates, it is woken up. This thread will stop
+     * its life flow.
+     */
+    protected void terminate() {
+        contextLock.lock();
+        terminate = true;
+        contextCondVar.signal();
+        contextLock.unlock();
+    }
+
+    /**
+     * @return true if this thread has been asked to stop its life flow, false otherwise
      */
-    protected void terminate() { terminate = true; }
+    protected boolean isTerminated() {
+        return terminate;
+    }
 }
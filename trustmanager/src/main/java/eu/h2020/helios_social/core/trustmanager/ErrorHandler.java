@@ -1,10 +1,19 @@
 package eu.h2020.helios_social.core.trustmanager;
 
+import java.io.IOException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 
 /**
  * This class implements some error handling methods, that differentiate the first testing
- * phases from the normal running state of the module.
+ * phases from the normal running state of the module. In the normal running state, errors
+ * are not thrown: they are counted by type, and for each type at most one log entry is
+ * written every log interval, reporting how many errors of that type occurred in the meanwhile.
+ * The errors suppressed during an interval are reported at its end, even if no other error
+ * of the same type occurs later.
  *
  * @author Barbara Guidi (guidi@di.unipi.it)
  * @author Laura Ricci (ricci@di.unipi.it)
@@ -14,27 +23,94 @@ import java.util.logging.Logger;
  */
 public class ErrorHandler {
 
+    /**
+     * Types of the errors handled by the module
+     */
+    public enum ErrorType {
+        /**
+         * A required argument is null
+         */
+        NULL_ARGUMENT,
+        /**
+         * The context is not known to the Trust Manager
+         */
+        UNKNOWN_CONTEXT,
+        /**
+         * The alter is not part of the context
+         */
+        UNKNOWN_ALTER,
+        /**
+         * The alter already has a trust score in the context
+         */
+        DUPLICATE_ALTER,
+        /**
+         * An argument has a value that is not allowed
+         */
+        INVALID_ARGUMENT,
+        /**
+         * A thread has been interrupted while waiting
+         */
+        INTERRUPTED,
+        /**
+         * A file couldn't be read or written
+         */
+        IO_FAILURE,
+        /**
+         * Any other anomaly
+         */
+        OTHER
+    }
+
     /**
      * This variable is set to true while the module is being tested, in order to be promptly
      * notified if some anomalous behaviour takes place
      */
-    private boolean development = true;
+    private volatile boolean development = true;
     /**
      * Object used for logging purposes
      */
     private static Logger logger;
+    /**
+     * Minimum time (in milliseconds) that elapses between two log entries of the same error type
+     */
+    private volatile long logInterval = 60000;
+    /**
+     * Number of errors that occurred, for each error type
+     */
+    private AtomicLongArray errorCounts;
+    /**
+     * Number of errors of each type that occurred up until the last log entry of that type
+     */
+    private AtomicLongArray loggedCounts;
+    /**
+     * Time (in milliseconds) of the last log entry, for each error type
+     */
+    private AtomicLongArray lastLogTimes;
+    /**
+     * For each error type, 1 if a report of the suppressed errors is scheduled, 0 otherwise
+     */
+    private AtomicIntegerArray reportScheduled;
+    /**
+     * Timer that reports the suppressed errors at the end of the log interval, created on first use
+     */
+    private Timer reportTimer;
 
     /**
      * Constructor method
      */
     public ErrorHandler() {
         logger = Logger.getGlobal();
+        int types = ErrorType.values().length;
+        errorCounts = new AtomicLongArray(types);
+        loggedCounts = new AtomicLongArray(types);
+        lastLogTimes = new AtomicLongArray(types);
+        reportScheduled = new AtomicIntegerArray(types);
     }
 
     /**
      * This method is called whenever an exception would normally need to be thrown. If the module
-     * is in testing phase, the exception is actually thrown. Otherwise, the anomaly is logged
-     * and the module keeps running.
+     * is in testing phase, the exception is actually thrown. Otherwise, the anomaly is counted
+     * and possibly logged, and the module keeps running.
      * @param ex Exception that has to be thrown/logged
      */
     protected void error(Exception ex) {
@@ -42,8 +118,124 @@ public class ErrorHandler {
             ex.printStackTrace();
             throw new RuntimeException(ex);
         }
-        else {
-            logger.warning(ex.getLocalizedMessage());
+        else count(typeOf(ex), ex.toString());
+    }
+
+    /**
+     * This method is called whenever an anomaly takes place in a background computation that
+     * must keep running, such as the periodic update of the trust values. The exception is never
+     * thrown: it is counted and possibly logged, and, if the module is in testing phase, its stack
+     * trace is printed along with the log entry, so that it is subject to the same rate limit.
+     * @param ex Exception that has to be logged
+     */
+    protected void warning(Exception ex) {
+        if(count(typeOf(ex), ex.toString()) && development) ex.printStackTrace();
+    }
+
+    /**
+     * @param ex An exception
+     * @return The error type the exception is counted as
+     */
+    private ErrorType typeOf(Exception ex) {
+        if(ex instanceof NullPointerException) return ErrorType.NULL_ARGUMENT;
+        else if(ex instanceof IllegalArgumentException) return ErrorType.INVALID_ARGUMENT;
+        else if(ex instanceof InterruptedException) return ErrorType.INTERRUPTED;
+        else if(ex instanceof IOException) return ErrorType.IO_FAILURE;
+        return ErrorType.OTHER;
+    }
+
+    /**
+     * This method is called whenever an expected anomaly takes place, such as a request about an
+     * unknown alter. If the module is in testing phase, an exception is thrown. Otherwise, the anomaly
+     * is counted and possibly logged without allocating any object, and the module keeps running.
+     * @param type The type of the anomaly
+     */
+    protected void error(ErrorType type) {
+        if(development) {
+            Exception ex = type == ErrorType.NULL_ARGUMENT ? new NullPointerException(type.name())
+                    : new IllegalArgumentException(type.name());
+            ex.printStackTrace();
+            throw new RuntimeException(ex);
+        }
+        else count(type, null);
+    }
+
+    /**
+     * Counts an error, and logs it if no error of the same type has been logged during the
+     * last log interval. The log entry reports how many errors of that type have occurred
+     * since the previous one. Otherwise, the error is suppressed, and a report of the suppressed
+     * errors is scheduled at the end of the interval.
+     * @param type The type of the error
+     * @param detail A description of the error, or null if there is none
+     * @return true if the error has been logged, false if it has been suppressed
+     */
+    private boolean count(ErrorType type, String detail) {
+        int idx = type.ordinal();
+        long total = errorCounts.incrementAndGet(idx);
+        long now = System.currentTimeMillis();
+        long lastLog = lastLogTimes.get(idx);
+        if(now - lastLog >= logInterval && lastLogTimes.compareAndSet(idx, lastLog, now)) {
+            long occurrences = total - loggedCounts.getAndSet(idx, total);
+            logger.warning("Trust Manager: " + occurrences + " error(s) of type " + type
+                    + " (" + total + " in total)" + (detail != null ? ", last: " + detail : ""));
+            return true;
         }
+        if(reportScheduled.compareAndSet(idx, 0, 1)) {
+            long delay = Math.max(0, lastLog + logInterval - now);
+            getReportTimer().schedule(new TimerTask() {
+                public void run() {
+                    reportScheduled.set(idx, 0);
+                    reportSuppressed(type);
+                }
+            }, delay);
+        }
+        return false;
+    }
+
+    /**
+     * Logs how many errors of a type have been suppressed since the last log entry of that type,
+     * if there are any.
+     * @param type The type of the errors
+     */
+    private void reportSuppressed(ErrorType type) {
+        int idx = type.ordinal();
+        lastLogTimes.set(idx, System.currentTimeMillis());
+        long total = errorCounts.get(idx);
+        long occurrences = total - loggedCounts.getAndSet(idx, total);
+        if(occurrences > 0)
+            logger.warning("Trust Manager: " + occurrences + " error(s) of type " + type
+                    + " (" + total + " in total)");
+    }
+
+    /**
+     * @return The timer that reports the suppressed errors, which is created on first use
+     */
+    private synchronized Timer getReportTimer() {
+        if(reportTimer == null) reportTimer = new Timer("TrustManager-ErrorReport", true);
+        return reportTimer;
+    }
+
+    /**
+     * @param development true to throw the errors, as in the testing phase, false to count and
+     *                    log them while the module keeps running
+     */
+    public void setDevelopment(boolean development) {
+        this.development = development;
+    }
+
+    /**
+     * @param logInterval The minimum time (in milliseconds) that elapses between two log entries
+     *                    of the same error type
+     */
+    public void setLogInterval(long logInterval) {
+        this.logInterval = logInterval;
+    }
+
+    /**
+     * @param type The error type
+     * @return The number of errors of that type that occurred while the module was running
+     */
+    public long getErrorCount(ErrorType type) {
+        return errorCounts.get(type.ordinal());
     }
-}
\ No newline at end of file
+}
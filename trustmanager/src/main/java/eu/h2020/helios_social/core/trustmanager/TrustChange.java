@@ -0,0 +1,161 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class represents a record of the trust change log, that is a change of the trust score
+ * towards an alter in a context. In the log, each record is encoded as follows:
+ * <ul>
+ *     <li>the length of the context identifier (2 bytes) followed by the identifier in UTF-8</li>
+ *     <li>the length of the alter identifier (2 bytes) followed by the identifier in UTF-8</li>
+ *     <li>the old trust score (4 bytes), NaN if the alter had no trust score</li>
+ *     <li>the new trust score (4 bytes)</li>
+ *     <li>the time of the change in milliseconds (8 bytes)</li>
+ * </ul>
+ *
+ * @author Barbara Guidi (guidi@di.unipi.it)
+ * @author Laura Ricci (ricci@di.unipi.it)
+ * @author Andrea Michienzi (andrea.michienzi@di.unipi.it)
+ * @author Giulia Fois (g.fois5@studenti.unipi.it)
+ * @author Fabrizio Baiardi (f.baiardi@unipi.it)
+ */
+public class TrustChange {
+
+    /**
+     * Size (in bytes) of the fixed-length fields of a record
+     */
+    protected static final int FIXED_SIZE = 2 + 2 + 4 + 4 + 8;
+
+    /**
+     * Identifier of the context
+     */
+    private final String contextId;
+    /**
+     * Identifier of the alter
+     */
+    private final String alterId;
+    /**
+     * Trust score before the change, NaN if the alter had no trust score
+     */
+    private final float oldTrust;
+    /**
+     * Trust score after the change
+     */
+    private final float newTrust;
+    /**
+     * Time (in milliseconds) of the change
+     */
+    private final long timestamp;
+    /**
+     * Offset of the record in the log
+     */
+    private final long offset;
+    /**
+     * Offset of the next record in the log
+     */
+    private final long nextOffset;
+
+    /**
+     * Constructor method
+     * @param contextId The identifier of the context
+     * @param alterId The identifier of the alter
+     * @param oldTrust The trust score before the change, NaN if the alter had no trust score
+     * @param newTrust The trust score after the change
+     * @param timestamp The time (in milliseconds) of the change
+     * @param offset The offset of the record in the log
+     * @param nextOffset The offset of the next record in the log
+     */
+    public TrustChange(String contextId, String alterId, float oldTrust, float newTrust, long timestamp,
+                       long offset, long nextOffset) {
+        this.contextId = contextId;
+        this.alterId = alterId;
+        this.oldTrust = oldTrust;
+        this.newTrust = newTrust;
+        this.timestamp = timestamp;
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+    }
+
+    /**
+     * Decodes the record that starts at the current position of a buffer. If the buffer doesn't
+     * contain the whole record, its position is left unchanged.
+     * @param buf The buffer the record is read from
+     * @param offset The offset in the log of the record
+     * @return The decoded record, or null if the buffer doesn't contain the whole record
+     */
+    protected static TrustChange decode(ByteBuffer buf, long offset) {
+        int start = buf.position();
+        if(buf.remaining() < 2) return null;
+        int contextLen = buf.getShort() & 0xFFFF;
+        if(buf.remaining() < contextLen + 2) {
+            buf.position(start);
+            return null;
+        }
+        byte[] contextBytes = new byte[contextLen];
+        buf.get(contextBytes);
+        int alterLen = buf.getShort() & 0xFFFF;
+        if(buf.remaining() < alterLen + FIXED_SIZE - 4) {
+            buf.position(start);
+            return null;
+        }
+        byte[] alterBytes = new byte[alterLen];
+        buf.get(alterBytes);
+        float oldTrust = buf.getFloat();
+        float newTrust = buf.getFloat();
+        long timestamp = buf.getLong();
+
+        return new TrustChange(new String(contextBytes, StandardCharsets.UTF_8),
+                new String(alterBytes, StandardCharsets.UTF_8), oldTrust, newTrust, timestamp,
+                offset, offset + buf.position() - start);
+    }
+
+    /**
+     * @return The identifier of the context
+     */
+    public String getContextId() {
+        return contextId;
+    }
+
+    /**
+     * @return The identifier of the alter
+     */
+    public String getAlterId() {
+        return alterId;
+    }
+
+    /**
+     * @return The trust score before the change, NaN if the alter had no trust score
+     */
+    public float getOldTrust() {
+        return oldTrust;
+    }
+
+    /**
+     * @return The trust score after the change
+     */
+    public float getNewTrust() {
+        return newTrust;
+    }
+
+    /**
+     * @return The time (in milliseconds) of the change
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The offset of the record in the log
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The offset of the next record in the log, from which reading can be resumed
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+}
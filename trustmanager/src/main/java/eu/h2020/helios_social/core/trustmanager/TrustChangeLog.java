@@ -0,0 +1,298 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * This class implements the append-only trust change log. Whenever the trust score towards an alter
+ * changes, a compact binary record (see {@link TrustChange}) is appended to the log, so that other
+ * modules can follow the changes through a {@link TrustChangeLogReader} instead of polling the trust
+ * values. Records are buffered and written to disk at the end of each update pass.
+ * The log is split in segment files, stored in a directory: a new segment is started whenever the
+ * current one exceeds the maximum segment size. Each segment is named after the offset in the log
+ * of its first record. When the log is opened, a record that was only partially written, for
+ * example because the device shut down during a flush, is removed from the end of the last segment.
+ * If a write fails, the records that were not written are dropped, and the current segment is
+ * reopened in the same way at the next append.
+ *
+ * @author Barbara Guidi (guidi@di.unipi.it)
+ * @author Laura Ricci (ricci@di.unipi.it)
+ * @author Andrea Michienzi (andrea.michienzi@di.unipi.it)
+ * @author Giulia Fois (g.fois5@studenti.unipi.it)
+ * @author Fabrizio Baiardi (f.baiardi@unipi.it)
+ */
+public class TrustChangeLog implements Closeable {
+
+    /**
+     * Extension of the segment files
+     */
+    private static final String SEGMENT_SUFFIX = ".log";
+    /**
+     * Size (in bytes) of the write buffer
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Directory that contains the segment files
+     */
+    private final File directory;
+    /**
+     * Size (in bytes) beyond which a new segment is started
+     */
+    private final long maxSegmentSize;
+    /**
+     * Buffer in which records are accumulated before being written to the current segment
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Channel used to append to the current segment
+     */
+    private FileChannel channel;
+    /**
+     * Offset in the log of the first record of the current segment
+     */
+    private long segmentBase;
+    /**
+     * Size (in bytes) of the current segment, including the buffered records
+     */
+    private long segmentSize;
+    /**
+     * Size (in bytes) of the current segment that has been completely written to disk
+     */
+    private long writtenSize;
+    /**
+     * True if the log has been closed, false otherwise
+     */
+    private boolean closed;
+
+    /**
+     * Constructor method. It opens the log stored in a directory, creating it if needed,
+     * and resumes appending right after its last complete record.
+     * @param directory The directory that contains the segment files
+     * @param maxSegmentSize The size (in bytes) beyond which a new segment is started
+     * @throws IOException If the log can't be opened
+     */
+    public TrustChangeLog(File directory, long maxSegmentSize) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create directory " + directory);
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        long[] bases = listSegments(directory);
+        segmentBase = bases.length > 0 ? bases[bases.length - 1] : 0;
+        openSegment();
+    }
+
+    /**
+     * Appends a trust change record to the log. The record is written to disk at the next flush.
+     * @param contextId The identifier of the context
+     * @param alterId The identifier of the alter
+     * @param oldTrust The trust score before the change, NaN if the alter had no trust score
+     * @param newTrust The trust score after the change
+     * @param timestamp The time (in milliseconds) of the change
+     * @throws IOException If the buffered records can't be written
+     */
+    public synchronized void append(String contextId, String alterId, float oldTrust, float newTrust,
+                                    long timestamp) throws IOException {
+        byte[] contextBytes = contextId.getBytes(StandardCharsets.UTF_8);
+        byte[] alterBytes = alterId.getBytes(StandardCharsets.UTF_8);
+        if(contextBytes.length > 0xFFFF || alterBytes.length > 0xFFFF)
+            throw new IOException("Identifier too long to be logged");
+        int length = TrustChange.FIXED_SIZE + contextBytes.length + alterBytes.length;
+
+        ensureOpen();
+        if(segmentSize > 0 && segmentSize + length > maxSegmentSize) rollSegment();
+        if(buffer.remaining() < length) flushBuffer();
+
+        ByteBuffer target = length > buffer.capacity() ? ByteBuffer.allocate(length) : buffer;
+        target.putShort((short) contextBytes.length);
+        target.put(contextBytes);
+        target.putShort((short) alterBytes.length);
+        target.put(alterBytes);
+        target.putFloat(oldTrust);
+        target.putFloat(newTrust);
+        target.putLong(timestamp);
+        segmentSize += length;
+
+        //A record that doesn't fit in the buffer is written directly
+        if(target != buffer) {
+            target.flip();
+            write(target);
+        }
+    }
+
+    /**
+     * Writes the buffered records to disk.
+     * @throws IOException If the records can't be written
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+    }
+
+    /**
+     * @return The offset in the log right after the last appended record
+     */
+    public synchronized long getEndOffset() {
+        return segmentBase + segmentSize;
+    }
+
+    /**
+     * Writes the buffered records to disk and closes the log.
+     * @throws IOException If the records can't be written
+     */
+    public synchronized void close() throws IOException {
+        if(closed) return;
+        closed = true;
+        try {
+            if(channel.isOpen()) flushBuffer();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reopens the current segment if it was closed by a failed write.
+     * @throws IOException If the log has been closed, or the segment can't be reopened
+     */
+    private void ensureOpen() throws IOException {
+        if(closed) throw new ClosedChannelException();
+        if(!channel.isOpen()) openSegment();
+    }
+
+    /**
+     * Writes the content of the buffer to the current segment.
+     * @throws IOException If the content can't be written
+     */
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes records to the current segment. If they can't be written, the records that are still
+     * buffered are dropped and the segment is closed, since a partially written record would make
+     * the following ones unreadable: the segment is reopened at the next append, after removing
+     * the partially written record.
+     * @param records The buffer that contains the records
+     * @throws IOException If the records can't be written
+     */
+    private void write(ByteBuffer records) throws IOException {
+        try {
+            while(records.hasRemaining()) channel.write(records);
+        }
+        catch(IOException e) {
+            buffer.clear();
+            segmentSize = writtenSize;
+            try {
+                channel.close();
+            }
+            catch(IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        writtenSize = segmentSize;
+    }
+
+    /**
+     * Closes the current segment and starts a new one.
+     * @throws IOException If the current segment can't be closed or the new one can't be created
+     */
+    private void rollSegment() throws IOException {
+        flushBuffer();
+        channel.close();
+        segmentBase += segmentSize;
+        openSegment();
+    }
+
+    /**
+     * Opens the segment that starts at the current base offset, in append mode.
+     * @throws IOException If the segment can't be opened
+     */
+    private void openSegment() throws IOException {
+        Path path = segmentFile(directory, segmentBase).toPath();
+        if(path.toFile().exists()) truncateTornRecord(path);
+        channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = channel.size();
+        writtenSize = segmentSize;
+    }
+
+    /**
+     * Scans a segment and truncates it right after its last complete record, so that the
+     * records appended later are not preceded by a partially written one.
+     * @param path The path of the segment file
+     * @throws IOException If the segment can't be read or truncated
+     */
+    private static void truncateTornRecord(Path path) throws IOException {
+        try(FileChannel segment = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = segment.size();
+            long pos = 0;
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+            while(pos < size) {
+                buf.clear();
+                if(segment.read(buf, pos) <= 0) break;
+                buf.flip();
+
+                int consumed = 0;
+                while(TrustChange.decode(buf, pos + consumed) != null) consumed = buf.position();
+
+                if(consumed == 0) {
+                    //A record larger than the buffer needs a larger one, otherwise
+                    //what is left is a partially written record
+                    if(buf.limit() == buf.capacity()) buf = ByteBuffer.allocate(buf.capacity() * 2);
+                    else break;
+                }
+                pos += consumed;
+            }
+            if(pos < size) segment.truncate(pos);
+        }
+    }
+
+    /**
+     * @param directory The directory that contains the segment files
+     * @param base The offset in the log of the first record of the segment
+     * @return The file of the segment
+     */
+    protected static File segmentFile(File directory, long base) {
+        return new File(directory, String.format("%020d", base) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @param directory The directory that contains the segment files
+     * @return The offsets of the first records of the segments in the directory, in ascending order
+     */
+    protected static long[] listSegments(File directory) {
+        ArrayList<Long> bases = new ArrayList<>();
+        String[] names = directory.list();
+        if(names != null) {
+            for(String name: names) {
+                if(!name.endsWith(SEGMENT_SUFFIX)) continue;
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                }
+                catch(NumberFormatException e) {
+                    //Not a segment of the log
+                }
+            }
+        }
+        Collections.sort(bases);
+        long[] result = new long[bases.size()];
+        for(int i = 0; i < result.length; i++) result[i] = bases.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class allows to read the trust change log written by the Trust Manager. Reading starts from
+ * a given offset; to tail the log, each read is resumed from the next offset of the last record
+ * returned by the previous one. Records that have not been completely written to disk yet are not
+ * returned.
+ *
+ * @author Barbara Guidi (guidi@di.unipi.it)
+ * @author Laura Ricci (ricci@di.unipi.it)
+ * @author Andrea Michienzi (andrea.michienzi@di.unipi.it)
+ * @author Giulia Fois (g.fois5@studenti.unipi.it)
+ * @author Fabrizio Baiardi (f.baiardi@unipi.it)
+ */
+public class TrustChangeLogReader {
+
+    /**
+     * Size (in bytes) of the read buffer
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Directory that contains the segment files
+     */
+    private final File directory;
+
+    /**
+     * Constructor method
+     * @param directory The directory that contains the segment files of the log
+     */
+    public TrustChangeLogReader(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads the records of the log starting from an offset. If the offset precedes the first
+     * segment that is still available, reading starts from the first available record.
+     * @param offset The offset of the first record to be read, 0 to read from the beginning
+     * @param maxRecords The maximum number of records to be read
+     * @return The records read, in the order in which they were appended
+     * @throws IOException If the log can't be read
+     */
+    public List<TrustChange> read(long offset, int maxRecords) throws IOException {
+        List<TrustChange> changes = new ArrayList<>();
+        long[] bases = TrustChangeLog.listSegments(directory);
+        if(bases.length == 0) return changes;
+
+        int idx = 0;
+        while(idx + 1 < bases.length && bases[idx + 1] <= offset) idx++;
+        if(offset < bases[idx]) offset = bases[idx];
+
+        while(changes.size() < maxRecords) {
+            long end = readSegment(bases[idx], offset, maxRecords, changes);
+            //The next segment starts where the current one ends
+            if(idx + 1 < bases.length && end >= bases[idx + 1]) offset = bases[++idx];
+            else break;
+        }
+        return changes;
+    }
+
+    /**
+     * Reads the records of a segment starting from an offset.
+     * @param base The offset in the log of the first record of the segment
+     * @param offset The offset of the first record to be read
+     * @param maxRecords The maximum number of records in the result list
+     * @param changes The list the records read are added to
+     * @return The offset right after the last record read
+     * @throws IOException If the segment can't be read
+     */
+    private long readSegment(long base, long offset, int maxRecords, List<TrustChange> changes)
+            throws IOException {
+        try(FileChannel channel = FileChannel.open(TrustChangeLog.segmentFile(directory, base).toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long pos = offset - base;
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+            while(changes.size() < maxRecords && pos < size) {
+                buf.clear();
+                if(channel.read(buf, pos) <= 0) break;
+                buf.flip();
+
+                int consumed = 0;
+                TrustChange change;
+                while(changes.size() < maxRecords
+                        && (change = TrustChange.decode(buf, base + pos + consumed)) != null) {
+                    changes.add(change);
+                    consumed = buf.position();
+                }
+
+                if(consumed == 0) {
+                    //A record larger than the buffer needs a larger one, otherwise the
+                    //last record of the segment hasn't been completely written yet
+                    if(buf.limit() == buf.capacity()) buf = ByteBuffer.allocate(buf.capacity() * 2);
+                    else break;
+                }
+                pos += consumed;
+            }
+            return base + pos;
+        }
+    }
+}
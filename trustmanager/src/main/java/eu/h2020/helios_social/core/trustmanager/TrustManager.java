@@ -5,7 +5,14 @@ import eu.h2020.helios_social.core.contextualegonetwork.Context;
 import eu.h2020.helios_social.core.contextualegonetwork.CrossModuleComponent;
 import eu.h2020.helios_social.core.contextualegonetwork.Node;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
@@ -24,6 +31,13 @@ import java.util.concurrent.locks.Lock;
  */
 public class TrustManager {
 
+    /**
+     * Bit pattern of the value that marks the pairs whose trust value has not been filled yet by the
+     * bulk request on (context, alter) pairs. It is a NaN that differs from the canonical one returned
+     * for unknown contexts and alters, so the marks never outlive the request
+     */
+    private static final int PENDING_TRUST_BITS = 0x7fc00001;
+
     /**
      * Reference to the Contextual Ego Network, from which the Trust Manager retrieves the social information
      * and on which the trust information is stored
@@ -34,39 +48,73 @@ public class TrustManager {
      */
     protected static Node ego;
     /**
-     * Initial weight for the profile similarity trust parameter
+     * Current configuration of the weights of the trust model parameters. It is replaced
+     * as a whole whenever the weights are changed at runtime
      */
-    protected static float ps_init_w;
+    protected static volatile TrustWeights weights;
     /**
-     * Initial weight for the proximity trust parameter
+     * Time interval that elapses between trust computations. It is expressed
+     * in seconds.
      */
-    protected static float pr_init_w;
+    protected static int deltaT;
     /**
-     * Initial weight for the common friends trust parameter
+     * Structure that maps each context to the thread that handles the computation of
+     * trust values for the nodes in it
      */
-    protected static float cf_init_w;
+    private ConcurrentHashMap<Context, ContextTrustUpdater> contextThreads;
     /**
-     * Weight for the common friends trust parameter
+     * Structure that maps each context to the last time (in milliseconds) it was used since the
+     * module was started, either because it was activated or deactivated or because a trust value in it
+     * was requested. It is exploited to warm up the contexts used since startup first
      */
-    protected static float cf_w;
+    private ConcurrentHashMap<Context, Long> lastActivity;
     /**
-     * Weight for the sentiment analysis trust parameter
+     * Time (in milliseconds) at which the module was started. The idle time of the contexts
+     * that haven't been used since startup is counted from it
      */
-    protected static float sa_w;
+    private volatile long startTime;
     /**
-     * Weight for the proximity trust parameter
+     * Thread that materializes the trust state of the loaded contexts in background,
+     * in order of priority, after the module has been started
      */
-    protected static float pr_w;
+    private Thread warmUpThread;
     /**
-     * Time interval that elapses between trust computations. It is expressed
-     * in seconds.
+     * Contexts to be warmed up, in the order in which the Contextual Ego Network lists them. Among
+     * contexts that have not been used since startup, this order decides which is warmed up first
      */
-    protected static int deltaT;
+    private List<Context> warmUpOrder;
     /**
-     * Structure that maps each context to the thread that handles the computation of
-     * trust values for the nodes in it
+     * Structure that maps each context evicted from memory to the compact form of its trust state
+     */
+    private ConcurrentHashMap<Context, CompactTrustState> evictedContexts;
+    /**
+     * Time (in milliseconds) after which an inactive context that hasn't been used is evicted from
+     * memory. A value of 0 means that inactive contexts are never evicted because of their idle time
      */
-    private HashMap<Context, ContextTrustUpdater> contextThreads;
+    private long maxIdleTime;
+    /**
+     * Maximum number of contexts whose trust handling thread is kept in memory. When this number is
+     * exceeded, the least recently used inactive contexts are evicted. A value of 0 means no limit
+     */
+    private int maxResidentContexts;
+    /**
+     * Thread that periodically evicts inactive contexts from memory, when the memory-bounded mode is enabled
+     */
+    private Thread evictionThread;
+    /**
+     * Budgeted scheduler that updates the trust values of the active contexts, or null if each
+     * context-related thread updates its own context every deltaT
+     */
+    protected static volatile TrustScheduler scheduler;
+    /**
+     * Context that is currently in the foreground, whose trust values are updated first by the
+     * budgeted scheduler
+     */
+    private volatile Context foregroundContext;
+    /**
+     * Log to which every change of a trust value is appended, or null if the log is disabled
+     */
+    protected static volatile TrustChangeLog changeLog;
     /**
      * Object used for error handling
      */
@@ -93,15 +141,12 @@ public class TrustManager {
         tcl = new TrustCENListener(this);
         cen.addListener(tcl);
 
-        ps_init_w = 0.2f;
-        pr_init_w = 0.1f;
-        cf_init_w = 0.7f;
-        cf_w = 0.3f;
-        sa_w = 0.6f;
-        pr_w = 0.1f;
+        weights = new TrustWeights(new HashMap<>());
 
         this.deltaT = deltaT;
-        contextThreads = new HashMap<>();
+        contextThreads = new ConcurrentHashMap<>();
+        lastActivity = new ConcurrentHashMap<>();
+        evictedContexts = new ConcurrentHashMap<>();
     }
 
     /**
@@ -126,40 +171,372 @@ public class TrustManager {
      */
     public TrustManager(ContextualEgoNetwork c, int deltaT, HashMap<String, Float> modelWeights) {
         this(c, deltaT);
+        weights = new TrustWeights(modelWeights);
+    }
 
-        if(modelWeights.get("ProfileSimilarityInit") != null)
-            ps_init_w = modelWeights.get("ProfileSimilarityInit");
-        if(modelWeights.get("CommonFriendsInit") != null)
-            cf_init_w = modelWeights.get("CommonFriendsInit");
-        if(modelWeights.get("ProximityInit") != null)
-            pr_init_w = modelWeights.get("ProximityInit");
-        if(modelWeights.get("CommonFriends") != null)
-            cf_w = modelWeights.get("CommonFriends");
-        if(modelWeights.get("SentimentAnalysis") != null)
-            sa_w = modelWeights.get("SentimentAnalysis");
-        if(modelWeights.get("Proximity") != null)
-            pr_w = modelWeights.get("Proximity");
-
-        if(ps_init_w == 0) {
-            float gap = 1 - (cf_init_w + pr_init_w);
-            cf_init_w += gap/2;
-            pr_init_w += gap/2;
+    /**
+     * Replaces the weights of the trust model parameters while the module is running. The new
+     * configuration is switched atomically, and the trust values of the contexts in memory are
+     * immediately re-scored by combining the parameter scores last computed for each alter with
+     * the new weights, without computing the parameters again. The weights that are not specified
+     * are set to default. The trust values of the contexts evicted from memory are re-scored at
+     * their first update after being restored. Concurrent calls are applied one at a time, so that
+     * the weights in use are always the ones the contexts were last re-scored with.
+     * @param modelWeights A map containing chosen values for the model parameter weights, with the
+     *                     same keys accepted by the constructor
+     */
+    public synchronized void setModelWeights(HashMap<String, Float> modelWeights) {
+        if(modelWeights == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return;
+        }
+        TrustWeights newWeights = new TrustWeights(modelWeights);
+        weights = newWeights;
+        for(ContextTrustUpdater contThread: contextThreads.values()) {
+            if(contThread.isInitialized()) contThread.rescore(newWeights);
         }
     }
 
     /**
-     * Starts the trust handling threads for the currently active contexts.
+     * Starts the Trust Manager. The trust handling threads for the currently active contexts are
+     * not started right away: the trust state of a context is materialized on the first request of
+     * a trust value in it or on its activation, while the remaining contexts are warmed up in background.
+     * The contexts used since startup are warmed up first, most recently used first; the others follow
+     * in the order in which the Contextual Ego Network lists them.
      */
     public void startModule() {
+        startTime = System.currentTimeMillis();
 
+        List<Context> order = new ArrayList<>();
         for(Context c: cen.getContexts()) {
-            if(c.isLoaded()) contextThreads.put(c, new ContextTrustUpdater(c));
+            if(c.isLoaded()) {
+                contextThreads.putIfAbsent(c, new ContextTrustUpdater(c));
+                order.add(c);
+            }
+        }
+        warmUpOrder = order;
+
+        warmUpThread = new Thread(this::warmUp);
+        warmUpThread.setDaemon(true);
+        warmUpThread.start();
+
+    }
+
+    /**
+     * @return The object used for error handling, through which the development mode, the log
+     *         interval and the error counters can be accessed
+     */
+    public ErrorHandler getErrorHandler() {
+        return eh;
+    }
+
+    /**
+     * Enables the trust change log. From then on, every change of a trust value is appended as a
+     * compact binary record to a log stored in a directory, from which other modules can follow the
+     * changes through a {@link TrustChangeLogReader}. If the directory already contains a log, new
+     * records are appended to it.
+     * @param directory The directory in which the log is stored
+     * @param maxSegmentSize The size (in bytes) beyond which a new segment file of the log is started
+     */
+    public synchronized void enableChangeLog(File directory, long maxSegmentSize) {
+        if(directory == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return;
+        }
+        if(maxSegmentSize <= 0) {
+            eh.error(ErrorHandler.ErrorType.INVALID_ARGUMENT);
+            return;
+        }
+        disableChangeLog();
+        try {
+            changeLog = new TrustChangeLog(directory, maxSegmentSize);
+        }
+        catch(IOException e) {
+            eh.error(e);
+        }
+    }
+
+    /**
+     * Disables the trust change log, writing to disk the records that are still buffered.
+     */
+    public synchronized void disableChangeLog() {
+        TrustChangeLog log = changeLog;
+        if(log == null) return;
+        changeLog = null;
+        try {
+            log.close();
+        }
+        catch(IOException e) {
+            eh.error(e);
+        }
+    }
+
+    /**
+     * Enables the memory-bounded mode. Every deltaT, the inactive contexts that haven't been used for
+     * longer than <i>maxIdleTime</i> are evicted from memory, as well as the least recently used inactive
+     * contexts in excess of <i>maxResidentContexts</i>. The trust handling thread of an evicted context
+     * is shut down, and its trust state is kept in a compact form, from which trust values can still
+     * be read and which is restored when the context becomes active again.
+     * @param maxIdleTime The time (in milliseconds) after which an unused inactive context is evicted,
+     *                    or 0 to disable eviction based on the idle time
+     * @param maxResidentContexts The maximum number of contexts kept in memory, or 0 for no limit
+     */
+    public synchronized void enableEviction(long maxIdleTime, int maxResidentContexts) {
+        if(maxIdleTime < 0 || maxResidentContexts < 0) {
+            eh.error(ErrorHandler.ErrorType.INVALID_ARGUMENT);
+            return;
+        }
+        this.maxIdleTime = maxIdleTime;
+        this.maxResidentContexts = maxResidentContexts;
+
+        if(evictionThread == null) {
+            evictionThread = new Thread(this::evictionLoop);
+            evictionThread.setDaemon(true);
+            evictionThread.start();
         }
+    }
 
-        for(Context c: contextThreads.keySet()) {
-            contextThreads.get(c).start();
+    /**
+     * Body of the eviction thread. Every deltaT, it evicts the inactive contexts according to the
+     * limits of the memory-bounded mode.
+     */
+    private void evictionLoop() {
+        while(true) {
+            evictInactiveContexts();
+            try { Thread.sleep(deltaT); }
+            catch (InterruptedException e) { return; }
         }
+    }
+
+    /**
+     * Evicts from memory the inactive contexts that have been idle for too long, and then the least
+     * recently used inactive contexts, up until the number of resident contexts is within the limit.
+     * The threads of the evicted contexts are joined after releasing the lock of the Trust Manager.
+     */
+    private void evictInactiveContexts() {
+        List<ContextTrustUpdater> evicted = new ArrayList<>();
+        synchronized(this) {
+            long now = System.currentTimeMillis();
+            if(maxIdleTime > 0) {
+                for(Map.Entry<Context, ContextTrustUpdater> entry: contextThreads.entrySet()) {
+                    if(isEvictable(entry.getValue())
+                            && now - getLastActivity(entry.getKey()) > maxIdleTime)
+                        evicted.add(evict(entry.getKey()));
+                }
+            }
+
+            while(maxResidentContexts > 0 && contextThreads.size() > maxResidentContexts) {
+                Context lru = null;
+                long lruActivity = Long.MAX_VALUE;
+                for(Map.Entry<Context, ContextTrustUpdater> entry: contextThreads.entrySet()) {
+                    if(!isEvictable(entry.getValue())) continue;
+                    long activity = getLastActivity(entry.getKey());
+                    if(activity < lruActivity) {
+                        lru = entry.getKey();
+                        lruActivity = activity;
+                    }
+                }
+                //Only contexts that can't be evicted are left in memory
+                if(lru == null) break;
+                evicted.add(evict(lru));
+            }
+        }
+
+        for(ContextTrustUpdater contThread: evicted) {
+            try {
+                contThread.join();
+            }
+            catch(InterruptedException e) {
+                eh.error(e);
+            }
+        }
+    }
+
+    /**
+     * Checks if a context can be evicted from memory. Active contexts are never evicted, and
+     * neither are contexts whose trust state has never been materialized: they hold no trust
+     * scores to be kept, and their compact state would be empty.
+     * @param contThread The trust handling thread of the context
+     * @return true if the context can be evicted, false otherwise
+     */
+    private boolean isEvictable(ContextTrustUpdater contThread) {
+        return !contThread.isActive() && contThread.hasTrustState();
+    }
+
+    /**
+     * Evicts an inactive context from memory: its trust handling thread is asked to shut down and
+     * its trust state is kept in a compact form. The lock of the Trust Manager must be held.
+     * @param c The context to be evicted
+     * @return The trust handling thread of the evicted context, that has to be joined by the caller
+     */
+    private ContextTrustUpdater evict(Context c) {
+        ContextTrustUpdater contThread = contextThreads.get(c);
 
+        //No update is started after terminate() returns, so the compact state is the final one
+        contThread.terminate();
+        evictedContexts.put(c, contThread.compact());
+        contextThreads.remove(c);
+        return contThread;
+    }
+
+    /**
+     * @return The number of contexts whose trust handling thread is kept in memory
+     */
+    public int getResidentContextCount() {
+        return contextThreads.size();
+    }
+
+    /**
+     * @return The number of contexts whose trust state has been evicted from memory
+     */
+    public int getEvictedContextCount() {
+        return evictedContexts.size();
+    }
+
+    /**
+     * Enables the budgeted scheduler, or changes its budget if it is already enabled. From then on,
+     * the context-related threads stop waking up every deltaT on their own: every deltaT, the active
+     * contexts are updated one at a time, in order of priority, until <i>budget</i> milliseconds of
+     * computation have been spent; the remaining updates are deferred to the next period.
+     * @param budget The maximum time (in milliseconds) that can be spent computing trust values in
+     *               each period
+     */
+    public synchronized void setComputationBudget(long budget) {
+        if(budget <= 0) {
+            eh.error(ErrorHandler.ErrorType.INVALID_ARGUMENT);
+            return;
+        }
+        if(scheduler != null) scheduler.setBudget(budget);
+        else {
+            scheduler = new TrustScheduler(this, budget);
+            scheduler.start();
+        }
+    }
+
+    /**
+     * Sets the context that is currently in the foreground. Its trust values are the first
+     * to be updated by the budgeted scheduler and to be warmed up.
+     * @param c The context in the foreground
+     */
+    public void setForegroundContext(Context c) {
+        if(c == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return;
+        }
+        foregroundContext = c;
+        touch(c);
+    }
+
+    /**
+     * @return The context that is currently in the foreground, or null if none has been set
+     */
+    protected Context getForegroundContext() {
+        return foregroundContext;
+    }
+
+    /**
+     * @return The structure that maps each resident context to its trust handling thread
+     */
+    protected Map<Context, ContextTrustUpdater> getContextThreads() {
+        return contextThreads;
+    }
+
+    /**
+     * @return The number of context updates that have been deferred by the budgeted scheduler
+     *         because they didn't fit in the budget
+     */
+    public long getDeferredUpdateCount() {
+        return scheduler == null ? 0 : scheduler.getDeferredUpdates();
+    }
+
+    /**
+     * Gets the staleness of the trust values of a context, that is the time elapsed since they were
+     * last computed.
+     * @param c The context whose staleness is requested
+     * @return The staleness (in milliseconds), or -1 if the trust values of the context are not
+     *         in memory or have never been computed
+     */
+    public long getStaleness(Context c) {
+        if(c == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return -1;
+        }
+        ContextTrustUpdater contThread = contextThreads.get(c);
+        if(contThread == null || contThread.getLastUpdateTime() == 0) return -1;
+        return System.currentTimeMillis() - contThread.getLastUpdateTime();
+    }
+
+    /**
+     * @return The highest staleness (in milliseconds) among the active contexts whose trust values
+     *         have been computed, or 0 if there is none
+     */
+    public long getMaxStaleness() {
+        long now = System.currentTimeMillis();
+        long maxStaleness = 0;
+        for(ContextTrustUpdater contThread: contextThreads.values()) {
+            if(contThread.isActive() && contThread.getLastUpdateTime() != 0)
+                maxStaleness = Math.max(maxStaleness, now - contThread.getLastUpdateTime());
+        }
+        return maxStaleness;
+    }
+
+    /**
+     * Body of the warm-up thread. It repeatedly picks, among the contexts whose trust handling
+     * thread has not been started yet, the most recently used one (or, if none of them has been
+     * used since startup, the first one listed by the Contextual Ego Network), then materializes
+     * its trust state and starts its thread. The priority is re-evaluated at every step, so that
+     * contexts that are used in the meanwhile are served first. When the budgeted scheduler is
+     * enabled, warm-up stops: the scheduler materializes the contexts within its budget.
+     */
+    private void warmUp() {
+        ContextTrustUpdater next;
+        do {
+            if(scheduler != null) return;
+            next = null;
+            long nextActivity = -1;
+            for(Context c: warmUpOrder) {
+                ContextTrustUpdater contThread = contextThreads.get(c);
+                if(contThread == null || contThread.getState() != Thread.State.NEW) continue;
+                long activity = lastActivity.getOrDefault(c, 0L);
+                if(activity > nextActivity) {
+                    next = contThread;
+                    nextActivity = activity;
+                }
+            }
+            if(next != null) {
+                next.initialize();
+                startUpdater(next);
+                //The thread could not be started, e.g. because the scheduler has just been enabled
+                if(next.getState() == Thread.State.NEW) return;
+            }
+        } while(next != null);
+    }
+
+    /**
+     * Starts a trust handling thread, if it has not been started yet. When the budgeted scheduler
+     * is enabled, the thread is not started, since the scheduler updates the context.
+     * @param contThread The thread to be started
+     */
+    private synchronized void startUpdater(ContextTrustUpdater contThread) {
+        if(scheduler != null) return;
+        if(contThread.getState() == Thread.State.NEW && !contThread.isTerminated()) contThread.start();
+    }
+
+    /**
+     * Records that a context has just been used, raising its warm-up priority.
+     * @param c The context that has been used
+     */
+    private void touch(Context c) {
+        lastActivity.put(c, System.currentTimeMillis());
+    }
+
+    /**
+     * @param c A context
+     * @return The last time (in milliseconds) the context was used, or the time at which the
+     *         module was started if it hasn't been used since then
+     */
+    private long getLastActivity(Context c) {
+        return lastActivity.getOrDefault(c, startTime);
     }
 
     /**
@@ -171,45 +548,67 @@ public class TrustManager {
 
         ContextTrustUpdater contThread = new ContextTrustUpdater(c);
         contextThreads.put(c, contThread);
-        contThread.start();
+        touch(c);
+        startUpdater(contThread);
 
     }
 
     /**
      * This method has to be called when a context's status is switched to active. The related
      * trust handling thread is notified, in order to re-start computing trust values towards the nodes
-     * within that context.
+     * within that context. If the trust state of the context has not been materialized yet, it is
+     * materialized now, restoring it from the compact form if the context was evicted from memory.
      * @param c The context whose status has been switched to active
      */
     public void activateContext(Context c) {
-        ContextTrustUpdater contThread = contextThreads.get(c);
-        Lock contLock = contThread.getLock();
-        Condition condVar = contThread.getCondVar();
-        contLock.lock();
-        contThread.setActive();
-        condVar.signal();
-        contLock.unlock();
+        if(c == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return;
+        }
+        touch(c);
+        ContextTrustUpdater contThread;
+        synchronized(this) {
+            contThread = contextThreads.computeIfAbsent(c,
+                    ctx -> new ContextTrustUpdater(ctx, evictedContexts.get(ctx)));
+            //The compact state is dropped only once the restored thread is visible to the readers
+            evictedContexts.remove(c);
+            Lock contLock = contThread.getLock();
+            Condition condVar = contThread.getCondVar();
+            contLock.lock();
+            contThread.setActive();
+            condVar.signal();
+            contLock.unlock();
+        }
+        contThread.initialize();
+        startUpdater(contThread);
 
     }
 
     /**
      * This method has to be called when a context's status is switched to inactive. The related
      * trust handling thread is notified, and put to a waiting status through a condition variable.
+     * The trust values of the context are updated for the last time while the thread is held off.
      * @param c The context whose status has been switched to inactive
      */
     public void deactivateContext(Context c) {
-        if(c == null) eh.error(new NullPointerException());
-        else if(!contextThreads.containsKey(c)) eh.error(new IllegalArgumentException());
+        if(c == null) eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+        else if(!contextThreads.containsKey(c)) eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
         else {
+            touch(c);
             ContextTrustUpdater contThread = contextThreads.get(c);
             Lock contLock = contThread.getLock();
             contLock.lock();
-            contThread.setInactive();
-            contLock.unlock();
+            try {
+                contThread.setInactive();
 
-            //Updates trust for the last time before the context becomes inactive,
-            //in order to maintain consistent trust values
-            contThread.updateTrust();
+                //Updates trust for the last time before the context becomes inactive,
+                //in order to maintain consistent trust values. If the trust state of the
+                //context has never been materialized, there is nothing to keep consistent
+                if(contThread.isInitialized()) contThread.updateTrust();
+            }
+            finally {
+                contLock.unlock();
+            }
         }
 
     }
@@ -218,15 +617,240 @@ public class TrustManager {
      * Gets the trust value related to an alter in a specific context. Trust isn't directly
      * recomputed; the value that is returned is the one saved by the thread (that is the one
      * that is present in the Contextual Ego Network) at a moment x that belongs to the interval
-     * (t - deltaT, t) (where t represents the current time)
+     * (t - deltaT, t) (where t represents the current time). If the trust state of the context
+     * has not been materialized yet, it is materialized on this first request.
      * @param c The context within which the trust value towards the alter has to be computed
      * @param alter The alter towards which the trust value has to be computed
-     * @return The trust value computed at the moment x
+     * @return The trust value computed at the moment x, or NaN if the context or the alter are unknown
+     *         or null
      */
     public float getTrust(Context c, Node alter) {
-        if(c == null || alter == null) eh.error(new NullPointerException());
-        else if(!contextThreads.containsKey(c)) eh.error(new IllegalArgumentException());
-        return contextThreads.get(c).getTrust(alter);
+        if(c == null || alter == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return Float.NaN;
+        }
+        ContextTrustUpdater contThread = contextThreads.get(c);
+        if(contThread != null) {
+            touch(c);
+            return contThread.getTrust(alter);
+        }
+        //The context has been evicted from memory, the trust value is read from its compact state
+        CompactTrustState evictedState = evictedContexts.get(c);
+        if(evictedState != null) {
+            touch(c);
+            float trustScore = evictedState.getTrust(alter);
+            if(Float.isNaN(trustScore)) eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
+            return trustScore;
+        }
+        eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
+        return Float.NaN;
+    }
+
+    /**
+     * Gets the trust value related to an alter in a specific context, with a bound on its freshness.
+     * If the value saved by the thread was computed at most <i>maxStaleness</i> milliseconds ago, it is
+     * returned; otherwise, the trust value towards that alter alone is computed on demand. Concurrent
+     * requests for the same alter share a single computation. If the context was evicted from memory,
+     * it is restored (but not activated) in order to compute the value.
+     * @param c The context within which the trust value towards the alter has to be computed
+     * @param alter The alter towards which the trust value has to be computed
+     * @param maxStaleness The maximum age (in milliseconds) of the returned trust value
+     * @return The trust value, or NaN if the context or the alter are unknown or null
+     */
+    public float getTrust(Context c, Node alter, long maxStaleness) {
+        if(c == null || alter == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return Float.NaN;
+        }
+        if(maxStaleness < 0) {
+            eh.error(ErrorHandler.ErrorType.INVALID_ARGUMENT);
+            return Float.NaN;
+        }
+        ContextTrustUpdater contThread = contextThreads.get(c);
+        if(contThread == null && evictedContexts.containsKey(c)) {
+            synchronized(this) {
+                contThread = contextThreads.computeIfAbsent(c, ctx -> {
+                    ContextTrustUpdater restored = new ContextTrustUpdater(ctx, evictedContexts.get(ctx));
+                    restored.setInactive();
+                    return restored;
+                });
+                //The compact state is dropped only once the restored thread is visible to the readers
+                evictedContexts.remove(c);
+            }
+        }
+        if(contThread == null) {
+            eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
+            return Float.NaN;
+        }
+        touch(c);
+        return contThread.getTrust(alter, maxStaleness);
+    }
+
+    /**
+     * Gets the trust values related to many (context, alter) pairs at once. The i-th pair is made of
+     * the i-th context and the i-th alter, and its trust value is put in the i-th position of
+     * <i>trustValues</i>. The values related to the same context are read in a single pass while the
+     * context-related thread is holding off its updates, so they are consistent with each other.
+     * Each context is visited once, starting from its first pair, and no memory is allocated: the pairs
+     * that are still to be filled are marked in <i>trustValues</i> itself.
+     * @param contexts The contexts of the pairs
+     * @param alters The alters of the pairs, in the same order as the contexts
+     * @param trustValues The array that is filled with the trust values; it must be at least as long
+     *                    as the list of pairs. The value of a pair whose context or alter are unknown
+     *                    or null is NaN
+     */
+    public void getTrust(List<Context> contexts, List<Node> alters, float[] trustValues) {
+        if(contexts == null || alters == null || trustValues == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return;
+        }
+        int n = contexts.size();
+        if(alters.size() != n || trustValues.length < n) {
+            eh.error(ErrorHandler.ErrorType.INVALID_ARGUMENT);
+            return;
+        }
+        float pending = Float.intBitsToFloat(PENDING_TRUST_BITS);
+        for(int i = 0; i < n; i++) trustValues[i] = pending;
+        for(int i = 0; i < n; i++) {
+            if(isPending(trustValues[i])) fillTrust(contexts.get(i), contexts, alters, trustValues, i);
+        }
+    }
+
+    /**
+     * Gets the trust values related to many alters in a specific context at once, in a single pass
+     * while the context-related thread is holding off its updates, so that they are consistent with
+     * each other.
+     * @param c The context within which the trust values towards the alters are requested
+     * @param alters The alters towards which the trust values are requested
+     * @param trustValues The array that is filled with the trust values, in the same order as the alters;
+     *                    it must be at least as long as the list of alters. The value of an unknown or
+     *                    null alter is NaN
+     */
+    public void getTrust(Context c, List<Node> alters, float[] trustValues) {
+        if(c == null || alters == null || trustValues == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return;
+        }
+        if(trustValues.length < alters.size()) {
+            eh.error(ErrorHandler.ErrorType.INVALID_ARGUMENT);
+            return;
+        }
+        ContextTrustUpdater contThread = contextThreads.get(c);
+        CompactTrustState evictedState = contThread == null ? evictedContexts.get(c) : null;
+        if(contThread == null && evictedState == null) {
+            eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
+            return;
+        }
+        touch(c);
+
+        if(contThread == null) {
+            for(int i = 0; i < alters.size(); i++) {
+                Node alter = alters.get(i);
+                trustValues[i] = alter == null ? Float.NaN : evictedState.getTrust(alter);
+            }
+            return;
+        }
+        contThread.initialize();
+        Lock contLock = contThread.getLock();
+        contLock.lock();
+        try {
+            for(int i = 0; i < alters.size(); i++) trustValues[i] = contThread.readTrust(alters.get(i));
+        }
+        finally {
+            contLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the trust values related to all the alters in a specific context at once, in a single pass
+     * while the context-related thread is holding off its updates, so that they are consistent with
+     * each other. Unlike the other bulk methods, both arrays are filled by this method: the i-th
+     * trust value is the one towards the i-th alter.
+     * @param c The context whose trust values are requested
+     * @param alters The array that is filled with the alters of the context, up to its length
+     * @param trustValues The array that is filled with the trust values towards the alters, up to its length
+     * @return The number of alters in the context, that may exceed the length of the arrays, or 0 if the
+     *         context is unknown or null. Only the first <i>min(return value, alters.length,
+     *         trustValues.length)</i> positions of the arrays are filled
+     */
+    public int getAllTrust(Context c, Node[] alters, float[] trustValues) {
+        if(c == null || alters == null || trustValues == null) {
+            eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+            return 0;
+        }
+        ContextTrustUpdater contThread = contextThreads.get(c);
+        CompactTrustState evictedState = contThread == null ? evictedContexts.get(c) : null;
+        if(contThread == null && evictedState == null) {
+            eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
+            return 0;
+        }
+        touch(c);
+
+        if(contThread == null) {
+            int count = 0;
+            for(Node n: c.getNodes()) {
+                if(!evictedState.contains(n)) continue;
+                if(count < alters.length && count < trustValues.length) {
+                    alters[count] = n;
+                    trustValues[count] = evictedState.getTrust(n);
+                }
+                count++;
+            }
+            return count;
+        }
+        contThread.initialize();
+        Lock contLock = contThread.getLock();
+        contLock.lock();
+        try {
+            return contThread.readAllTrust(alters, trustValues);
+        }
+        finally {
+            contLock.unlock();
+        }
+    }
+
+    /**
+     * Fills the trust values of all the pairs related to a context, starting from its first pair.
+     * @param c The context whose pairs are filled
+     * @param contexts The contexts of the pairs
+     * @param alters The alters of the pairs
+     * @param trustValues The array that is filled with the trust values, where the pairs still
+     *                    to be filled are marked
+     * @param first The index of the first pair related to the context
+     */
+    private void fillTrust(Context c, List<Context> contexts, List<Node> alters, float[] trustValues, int first) {
+        ContextTrustUpdater contThread = c == null ? null : contextThreads.get(c);
+        CompactTrustState evictedState = c == null || contThread != null ? null : evictedContexts.get(c);
+        if(c == null) eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+        else if(contThread == null && evictedState == null) eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
+        else touch(c);
+
+        Lock contLock = null;
+        if(contThread != null) {
+            contThread.initialize();
+            contLock = contThread.getLock();
+            contLock.lock();
+        }
+        try {
+            for(int j = first; j < contexts.size(); j++) {
+                if(!isPending(trustValues[j]) || !Objects.equals(contexts.get(j), c)) continue;
+                Node alter = alters.get(j);
+                if(contThread != null) trustValues[j] = contThread.readTrust(alter);
+                else if(evictedState != null && alter != null) trustValues[j] = evictedState.getTrust(alter);
+                else trustValues[j] = Float.NaN;
+            }
+        }
+        finally {
+            if(contLock != null) contLock.unlock();
+        }
+    }
+
+    /**
+     * @param trustValue A value of the array filled by the bulk request on (context, alter) pairs
+     * @return true if the value marks a pair whose trust value has not been filled yet, false otherwise
+     */
+    private static boolean isPending(float trustValue) {
+        return Float.floatToRawIntBits(trustValue) == PENDING_TRUST_BITS;
     }
 
     /**
@@ -236,8 +860,10 @@ public class TrustManager {
      * @param c The context in which the alter has been added
      */
     public void addAlterToContext(Node alter, Context c) {
-        if(c == null || alter == null) eh.error(new NullPointerException());
-        else if(!contextThreads.containsKey(c)) eh.error(new IllegalArgumentException());
+        if(c == null || alter == null) eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+        //The initial trust score towards the alter will be computed when the context is restored
+        else if(evictedContexts.containsKey(c)) return;
+        else if(!contextThreads.containsKey(c)) eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
         else contextThreads.get(c).newAlterTrust(alter);
     }
 
@@ -247,8 +873,9 @@ public class TrustManager {
      * @param c The context that has been removed from the Contextual Ego Network
      */
     public void removeContext(Context c) {
-        if(c == null) eh.error(new NullPointerException());
-        else if(!contextThreads.containsKey(c)) eh.error(new IllegalArgumentException());
+        if(c == null) eh.error(ErrorHandler.ErrorType.NULL_ARGUMENT);
+        else if(evictedContexts.remove(c) != null) lastActivity.remove(c);
+        else if(!contextThreads.containsKey(c)) eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
         else {
             ContextTrustUpdater contThread = contextThreads.get(c);
             contThread.terminate();
@@ -258,6 +885,8 @@ public class TrustManager {
             catch(InterruptedException e) {
                 eh.error(e);
             }
+            contextThreads.remove(c);
+            lastActivity.remove(c);
 
         }
     }
@@ -0,0 +1,165 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import eu.h2020.helios_social.core.contextualegonetwork.Context;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements the budgeted scheduler of the Trust Manager. When it is enabled, the
+ * context-related threads stop updating trust values on their own; instead, every deltaT this
+ * thread updates the active contexts one at a time, in order of priority, until the computation
+ * budget of the period is spent. The updates that don't fit in the budget are deferred to the
+ * next period, in which their staleness raises their priority.
+ * The priority of a context is given, in order, by being the foreground context, by the number
+ * of alters added to it since its last update, and by the time elapsed since its last update.
+ *
+ * @author Barbara Guidi (guidi@di.unipi.it)
+ * @author Laura Ricci (ricci@di.unipi.it)
+ * @author Andrea Michienzi (andrea.michienzi@di.unipi.it)
+ * @author Giulia Fois (g.fois5@studenti.unipi.it)
+ * @author Fabrizio Baiardi (f.baiardi@unipi.it)
+ */
+public class TrustScheduler extends Thread {
+
+    /**
+     * Reference to the Trust Manager, from which the contexts to be updated are retrieved
+     */
+    private TrustManager trustManager;
+    /**
+     * Maximum time (in milliseconds) that can be spent computing trust values in each period
+     */
+    private volatile long budget;
+    /**
+     * Number of context updates that have been deferred because they didn't fit in the budget
+     */
+    private AtomicLong deferredUpdates;
+    /**
+     * Average time (in nanoseconds) spent computing the trust score towards a single alter, measured
+     * on the updates run so far, or NaN if no update has been measured yet. It is used to estimate the
+     * cost of the contexts whose last update duration is not known, such as the ones to be materialized
+     */
+    private double costPerAlter = Double.NaN;
+
+    /**
+     * Constructor method
+     * @param tm A reference to the TrustManager object
+     * @param budget The maximum time (in milliseconds) that can be spent computing trust values
+     *               in each period
+     */
+    public TrustScheduler(TrustManager tm, long budget) {
+        trustManager = tm;
+        this.budget = budget;
+        deferredUpdates = new AtomicLong();
+        setDaemon(true);
+    }
+
+    /**
+     * Method that is executed when the Trust Manager calls the <i>start</i> method. Every deltaT,
+     * it runs the context updates that fit in the budget, and defers the others.
+     */
+    public void run() {
+        while(true) {
+            long periodStart = System.currentTimeMillis();
+            runPeriod();
+
+            long elapsed = System.currentTimeMillis() - periodStart;
+            try { Thread.sleep(Math.max(0, TrustManager.deltaT - elapsed)); }
+            catch (InterruptedException e) { return; }
+        }
+    }
+
+    /**
+     * Runs the updates of a single period. Each update is run only if its estimated cost fits in
+     * what is left of the budget. The first update of the period is always run, so that a context
+     * whose update is more expensive than the whole budget is not starved. A failure in the update
+     * of a context is reported, and doesn't prevent the other contexts from being updated.
+     */
+    private void runPeriod() {
+        Context foreground = trustManager.getForegroundContext();
+        ArrayList<ContextTrustUpdater> pending = new ArrayList<>();
+        for(ContextTrustUpdater contThread: trustManager.getContextThreads().values()) {
+            if(contThread.isActive() && !contThread.isTerminated()) pending.add(contThread);
+        }
+        pending.sort(Comparator
+                .comparing((ContextTrustUpdater u) -> !Objects.equals(u.getContext(), foreground))
+                .thenComparingInt(u -> -u.getDirtyAlters())
+                .thenComparingLong(ContextTrustUpdater::getLastUpdateTime));
+        runUpdates(pending);
+    }
+
+    /**
+     * Runs the updates of a single period, in the given order, within the budget. The time spent
+     * and the estimated costs are accounted in nanoseconds, so that many updates shorter than a
+     * millisecond still consume the budget.
+     * @param pending The trust handling threads of the contexts to be updated, in order of priority
+     */
+    protected void runUpdates(List<ContextTrustUpdater> pending) {
+        long budgetMs = budget;
+        long budgetNanos = budgetMs >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : budgetMs * 1000000;
+        long spent = 0;
+        boolean first = true;
+        for(ContextTrustUpdater contThread: pending) {
+            if(!first && estimateCost(contThread) > budgetNanos - spent) {
+                deferredUpdates.incrementAndGet();
+                continue;
+            }
+            boolean materialize = !contThread.isInitialized();
+            long start = System.nanoTime();
+            try {
+                contThread.initialize();
+                contThread.scheduledUpdate();
+            }
+            catch(RuntimeException e) {
+                TrustManager.eh.warning(e);
+            }
+            long elapsed = System.nanoTime() - start;
+            spent += elapsed;
+            first = false;
+
+            //A materialization computes the trust scores twice: once to initialize them and once to update them
+            int computations = contThread.getAlterCount() * (materialize ? 2 : 1);
+            if(computations > 0) {
+                double cost = (double) elapsed / computations;
+                costPerAlter = Double.isNaN(costPerAlter) ? cost : (costPerAlter + cost) / 2;
+            }
+        }
+    }
+
+    /**
+     * Estimates the cost of updating a context. It is the duration of its last update, or the
+     * cost of computing the trust scores towards all its alters if that is higher. The cost of
+     * materializing a context that has not been materialized yet is added to it. If a cost can't
+     * be estimated because no update has been measured yet, the update doesn't fit in any budget.
+     * @param contThread The trust handling thread of the context
+     * @return The estimated cost (in nanoseconds)
+     */
+    private long estimateCost(ContextTrustUpdater contThread) {
+        double perAlter = costPerAlter;
+        long cost = contThread.getLastUpdateDuration();
+        if(Double.isNaN(perAlter)) return contThread.isInitialized() && cost > 0 ? cost : Long.MAX_VALUE;
+
+        long computations = (long) Math.ceil(perAlter * contThread.getAlterCount());
+        cost = Math.max(cost, computations);
+        if(!contThread.isInitialized()) cost += computations;
+        return cost;
+    }
+
+    /**
+     * @param budget The maximum time (in milliseconds) that can be spent computing trust values
+     *               in each period
+     */
+    protected void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return The number of context updates that have been deferred because they didn't fit in the budget
+     */
+    public long getDeferredUpdates() {
+        return deferredUpdates.get();
+    }
+}
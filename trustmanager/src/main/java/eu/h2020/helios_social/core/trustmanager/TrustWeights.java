@@ -0,0 +1,105 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import java.util.Map;
+
+/**
+ * This class holds a configuration of the weights of the trust model parameters. Instances are
+ * immutable, so that the Trust Manager can switch to a new configuration atomically by replacing
+ * the reference to the current one.
+ *
+ * @author Barbara Guidi (guidi@di.unipi.it)
+ * @author Laura Ricci (ricci@di.unipi.it)
+ * @author Andrea Michienzi (andrea.michienzi@di.unipi.it)
+ * @author Giulia Fois (g.fois5@studenti.unipi.it)
+ * @author Fabrizio Baiardi (f.baiardi@unipi.it)
+ */
+public class TrustWeights {
+
+    /**
+     * Initial weight for the profile similarity trust parameter
+     */
+    protected final float ps_init_w;
+    /**
+     * Initial weight for the proximity trust parameter
+     */
+    protected final float pr_init_w;
+    /**
+     * Initial weight for the common friends trust parameter
+     */
+    protected final float cf_init_w;
+    /**
+     * Weight for the common friends trust parameter
+     */
+    protected final float cf_w;
+    /**
+     * Weight for the sentiment analysis trust parameter
+     */
+    protected final float sa_w;
+    /**
+     * Weight for the proximity trust parameter
+     */
+    protected final float pr_w;
+
+    /**
+     * Constructor method. It creates a configuration with the chosen model parameter weights.
+     * The weights that are not specified are set to default. The keys of the map are the same
+     * accepted by the constructor of the Trust Manager.
+     * @param modelWeights A map containing chosen values for the model parameter weights
+     */
+    public TrustWeights(Map<String, Float> modelWeights) {
+        float ps_init = 0.2f;
+        float pr_init = 0.1f;
+        float cf_init = 0.7f;
+        float cf = 0.3f;
+        float sa = 0.6f;
+        float pr = 0.1f;
+
+        if(modelWeights.get("ProfileSimilarityInit") != null)
+            ps_init = modelWeights.get("ProfileSimilarityInit");
+        if(modelWeights.get("CommonFriendsInit") != null)
+            cf_init = modelWeights.get("CommonFriendsInit");
+        if(modelWeights.get("ProximityInit") != null)
+            pr_init = modelWeights.get("ProximityInit");
+        if(modelWeights.get("CommonFriends") != null)
+            cf = modelWeights.get("CommonFriends");
+        if(modelWeights.get("SentimentAnalysis") != null)
+            sa = modelWeights.get("SentimentAnalysis");
+        if(modelWeights.get("Proximity") != null)
+            pr = modelWeights.get("Proximity");
+
+        if(ps_init == 0) {
+            float gap = 1 - (cf_init + pr_init);
+            cf_init += gap/2;
+            pr_init += gap/2;
+        }
+
+        ps_init_w = ps_init;
+        pr_init_w = pr_init;
+        cf_init_w = cf_init;
+        cf_w = cf;
+        sa_w = sa;
+        pr_w = pr;
+    }
+
+    /**
+     * Combines the parameters that make up the initial trust score.
+     * @param profileSimilarity The Profile Similarity score
+     * @param commonFriends The Common Friends score
+     * @param proximity The Proximity score
+     * @return The initial trust score
+     */
+    public float initialTrust(float profileSimilarity, float commonFriends, float proximity) {
+        return ps_init_w * profileSimilarity + cf_init_w * commonFriends + pr_init_w * proximity;
+    }
+
+    /**
+     * Combines the parameters that make up the trust score.
+     * @param commonFriends The Common Friends score
+     * @param sentimentAnalysis The Sentiment Analysis score
+     * @param proximity The Proximity score
+     * @return The trust score
+     */
+    public float trust(float commonFriends, float sentimentAnalysis, float proximity) {
+        return cf_w * commonFriends + sa_w * sentimentAnalysis + pr_w * proximity;
+    }
+}
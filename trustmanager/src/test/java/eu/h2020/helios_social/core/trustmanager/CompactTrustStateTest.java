@@ -0,0 +1,58 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the compact trust state kept for the contexts evicted from memory.
+ */
+public class CompactTrustStateTest {
+
+    @Test
+    public void scores_areFoundWhateverTheInputOrder() {
+        CompactTrustState state = new CompactTrustState(new String[]{"carol", "alice", "dave", "bob"},
+                new float[]{0.3f, 0.1f, 0.4f, 0.2f}, 1000L);
+
+        assertEquals(4, state.size());
+        assertEquals(0.1f, state.getTrust("alice"), 0.f);
+        assertEquals(0.2f, state.getTrust("bob"), 0.f);
+        assertEquals(0.3f, state.getTrust("carol"), 0.f);
+        assertEquals(0.4f, state.getTrust("dave"), 0.f);
+        assertTrue(state.contains("carol"));
+    }
+
+    @Test
+    public void unknownAlter_hasNoScore() {
+        CompactTrustState state = new CompactTrustState(new String[]{"alice", "bob"},
+                new float[]{0.1f, 0.2f}, 1000L);
+
+        assertFalse(state.contains("eve"));
+        assertTrue(Float.isNaN(state.getTrust("eve")));
+    }
+
+    @Test
+    public void emptyState_hasNoScores() {
+        CompactTrustState state = new CompactTrustState(new String[0], new float[0], 0L);
+
+        assertEquals(0, state.size());
+        assertFalse(state.contains("alice"));
+        assertTrue(Float.isNaN(state.getTrust("alice")));
+    }
+
+    @Test
+    public void updateTime_isKept() {
+        CompactTrustState state = new CompactTrustState(new String[]{"alice"}, new float[]{0.5f}, 123456789L);
+        assertEquals(123456789L, state.getUpdateTime());
+    }
+
+    @Test
+    public void input_isNotModified() {
+        String[] ids = {"bob", "alice"};
+        float[] values = {0.2f, 0.1f};
+        new CompactTrustState(ids, values, 1000L);
+
+        assertEquals("bob", ids[0]);
+        assertEquals(0.2f, values[0], 0.f);
+    }
+}
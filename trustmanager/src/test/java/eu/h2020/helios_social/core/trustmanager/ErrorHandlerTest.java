@@ -0,0 +1,131 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the error handler, in the testing phase and in the normal running state.
+ */
+public class ErrorHandlerTest {
+
+    /**
+     * Handler that keeps the messages logged by the error handler
+     */
+    static class RecordingHandler extends Handler {
+        final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(LogRecord record) {
+            if(record.getMessage().startsWith("Trust Manager")) messages.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    @Test
+    public void development_throwsErrors() {
+        ErrorHandler eh = new ErrorHandler();
+        try {
+            eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
+            fail("the error should have been thrown");
+        }
+        catch(RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        try {
+            eh.error(new IOException("disk full"));
+            fail("the error should have been thrown");
+        }
+        catch(RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void production_countsErrorsByType() {
+        ErrorHandler eh = new ErrorHandler();
+        eh.setDevelopment(false);
+        eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
+        eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
+        eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
+        eh.error(new IOException("disk full"));
+        eh.error(new NullPointerException());
+        eh.error(new IllegalStateException());
+
+        assertEquals(2, eh.getErrorCount(ErrorHandler.ErrorType.UNKNOWN_ALTER));
+        assertEquals(1, eh.getErrorCount(ErrorHandler.ErrorType.UNKNOWN_CONTEXT));
+        assertEquals(1, eh.getErrorCount(ErrorHandler.ErrorType.IO_FAILURE));
+        assertEquals(1, eh.getErrorCount(ErrorHandler.ErrorType.NULL_ARGUMENT));
+        assertEquals(1, eh.getErrorCount(ErrorHandler.ErrorType.OTHER));
+        assertEquals(0, eh.getErrorCount(ErrorHandler.ErrorType.DUPLICATE_ALTER));
+    }
+
+    @Test
+    public void warnings_areCountedWithoutThrowing() {
+        ErrorHandler eh = new ErrorHandler();
+        eh.warning(new IOException("disk full"));
+        eh.warning(new IOException("disk full"));
+        assertEquals(2, eh.getErrorCount(ErrorHandler.ErrorType.IO_FAILURE));
+    }
+
+    @Test
+    public void logEntries_areRateLimitedAndSuppressedErrorsReported() throws InterruptedException {
+        RecordingHandler handler = new RecordingHandler();
+        Logger.getGlobal().addHandler(handler);
+        try {
+            ErrorHandler eh = new ErrorHandler();
+            eh.setDevelopment(false);
+            eh.setLogInterval(200);
+            for(int i = 0; i < 5; i++) eh.error(new IOException("disk full"));
+
+            //Only the first error is logged right away, along with its detail
+            assertEquals(1, handler.messages.size());
+            assertTrue(handler.messages.get(0).contains("IO_FAILURE"));
+            assertTrue(handler.messages.get(0).contains("disk full"));
+
+            //The suppressed errors are reported at the end of the interval, with no further error
+            long deadline = System.currentTimeMillis() + 5000;
+            while(handler.messages.size() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+            assertEquals(2, handler.messages.size());
+            assertTrue(handler.messages.get(1).startsWith("Trust Manager: 4 error(s) of type IO_FAILURE"));
+            assertTrue(handler.messages.get(1).contains("(5 in total)"));
+            assertEquals(5, eh.getErrorCount(ErrorHandler.ErrorType.IO_FAILURE));
+        }
+        finally {
+            Logger.getGlobal().removeHandler(handler);
+        }
+    }
+
+    @Test
+    public void errorTypes_areRateLimitedSeparately() {
+        RecordingHandler handler = new RecordingHandler();
+        Logger.getGlobal().addHandler(handler);
+        try {
+            ErrorHandler eh = new ErrorHandler();
+            eh.setDevelopment(false);
+            eh.setLogInterval(60000);
+            eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
+            eh.error(ErrorHandler.ErrorType.UNKNOWN_ALTER);
+            eh.error(ErrorHandler.ErrorType.UNKNOWN_CONTEXT);
+
+            assertEquals(2, handler.messages.size());
+            assertTrue(handler.messages.get(0).contains("UNKNOWN_ALTER"));
+            assertTrue(handler.messages.get(1).contains("UNKNOWN_CONTEXT"));
+        }
+        finally {
+            Logger.getGlobal().removeHandler(handler);
+        }
+    }
+}
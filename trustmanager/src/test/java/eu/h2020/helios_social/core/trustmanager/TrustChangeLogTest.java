@@ -0,0 +1,217 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the trust change log: records written by {@link TrustChangeLog} are read
+ * back through {@link TrustChangeLogReader}, across segments and after a partially written record.
+ */
+public class TrustChangeLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void records_roundTrip() throws IOException {
+        File dir = folder.newFolder("log");
+        TrustChangeLog log = new TrustChangeLog(dir, 1024 * 1024);
+        log.append("work", "alice", Float.NaN, 0.5f, 1000L);
+        log.append("work", "bob", 0.25f, 0.75f, 2000L);
+        log.append("home", "alice", 0.1f, 0.2f, 3000L);
+        long end = log.getEndOffset();
+        log.close();
+
+        List<TrustChange> changes = new TrustChangeLogReader(dir).read(0, 10);
+        assertEquals(3, changes.size());
+
+        TrustChange first = changes.get(0);
+        assertEquals("work", first.getContextId());
+        assertEquals("alice", first.getAlterId());
+        assertTrue(Float.isNaN(first.getOldTrust()));
+        assertEquals(0.5f, first.getNewTrust(), 0.f);
+        assertEquals(1000L, first.getTimestamp());
+        assertEquals(0L, first.getOffset());
+
+        TrustChange second = changes.get(1);
+        assertEquals("bob", second.getAlterId());
+        assertEquals(0.25f, second.getOldTrust(), 0.f);
+        assertEquals(0.75f, second.getNewTrust(), 0.f);
+        assertEquals(first.getNextOffset(), second.getOffset());
+
+        TrustChange third = changes.get(2);
+        assertEquals("home", third.getContextId());
+        assertEquals(3000L, third.getTimestamp());
+        assertEquals(end, third.getNextOffset());
+
+        //Reading resumes from the next offset of the last record read
+        List<TrustChange> rest = new TrustChangeLogReader(dir).read(first.getNextOffset(), 10);
+        assertEquals(2, rest.size());
+        assertEquals("bob", rest.get(0).getAlterId());
+        assertTrue(new TrustChangeLogReader(dir).read(end, 10).isEmpty());
+    }
+
+    @Test
+    public void unflushedRecords_areNotRead() throws IOException {
+        File dir = folder.newFolder("log");
+        TrustChangeLog log = new TrustChangeLog(dir, 1024 * 1024);
+        log.append("work", "alice", Float.NaN, 0.5f, 1000L);
+        assertTrue(new TrustChangeLogReader(dir).read(0, 10).isEmpty());
+        log.flush();
+        assertEquals(1, new TrustChangeLogReader(dir).read(0, 10).size());
+        log.close();
+    }
+
+    @Test
+    public void segments_rollAndAreReadInOrder() throws IOException {
+        File dir = folder.newFolder("log");
+        //Each record takes 20 + 4 + 6 = 30 bytes, so that a segment holds two of them
+        TrustChangeLog log = new TrustChangeLog(dir, 64);
+        for(int i = 0; i < 9; i++) log.append("ctx0", "alter" + i, Float.NaN, i / 10.f, i);
+        long end = log.getEndOffset();
+        log.close();
+
+        long[] bases = TrustChangeLog.listSegments(dir);
+        assertEquals(5, bases.length);
+        assertArrayEquals(new long[]{0, 60, 120, 180, 240}, bases);
+        assertEquals(270L, end);
+
+        List<TrustChange> changes = new TrustChangeLogReader(dir).read(0, 100);
+        assertEquals(9, changes.size());
+        for(int i = 0; i < 9; i++) {
+            assertEquals("alter" + i, changes.get(i).getAlterId());
+            assertEquals(30L * i, changes.get(i).getOffset());
+        }
+
+        //A read limited to fewer records stops within a segment and resumes from there
+        List<TrustChange> firstPage = new TrustChangeLogReader(dir).read(0, 3);
+        assertEquals(3, firstPage.size());
+        List<TrustChange> secondPage = new TrustChangeLogReader(dir).read(firstPage.get(2).getNextOffset(), 100);
+        assertEquals(6, secondPage.size());
+        assertEquals("alter3", secondPage.get(0).getAlterId());
+
+        //Appending resumes in the last segment
+        log = new TrustChangeLog(dir, 64);
+        assertEquals(end, log.getEndOffset());
+        log.append("ctx0", "alter9", Float.NaN, 0.9f, 9);
+        log.close();
+        changes = new TrustChangeLogReader(dir).read(end, 100);
+        assertEquals(1, changes.size());
+        assertEquals("alter9", changes.get(0).getAlterId());
+        assertEquals(end, changes.get(0).getOffset());
+    }
+
+    @Test
+    public void largeRecords_areWrittenAndRead() throws IOException {
+        File dir = folder.newFolder("log");
+        char[] id = new char[0xFFFF];
+        Arrays.fill(id, 'a');
+        String alterId = new String(id);
+
+        TrustChangeLog log = new TrustChangeLog(dir, 1024 * 1024);
+        log.append("work", "bob", Float.NaN, 0.5f, 1000L);
+        log.append("work", alterId, Float.NaN, 0.5f, 2000L);
+        log.append("work", "carol", Float.NaN, 0.5f, 3000L);
+        log.close();
+
+        List<TrustChange> changes = new TrustChangeLogReader(dir).read(0, 10);
+        assertEquals(3, changes.size());
+        assertEquals(alterId, changes.get(1).getAlterId());
+        assertEquals("carol", changes.get(2).getAlterId());
+    }
+
+    @Test
+    public void tornTail_isIgnoredAndTruncatedOnReopen() throws IOException {
+        File dir = folder.newFolder("log");
+        TrustChangeLog log = new TrustChangeLog(dir, 1024 * 1024);
+        log.append("work", "alice", Float.NaN, 0.5f, 1000L);
+        log.append("work", "bob", Float.NaN, 0.75f, 2000L);
+        long end = log.getEndOffset();
+        log.close();
+
+        //Simulates a record whose flush was interrupted after its first bytes
+        File segment = TrustChangeLog.segmentFile(dir, 0);
+        try(FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[]{0, 4, 'w', 'o', 'r', 'k', 0, 5, 'c'});
+        }
+        assertEquals(end + 9, segment.length());
+
+        //Readers don't return the partially written record
+        assertEquals(2, new TrustChangeLogReader(dir).read(0, 10).size());
+
+        //Reopening the log drops it, and appending resumes after the last complete record
+        log = new TrustChangeLog(dir, 1024 * 1024);
+        assertEquals(end, segment.length());
+        assertEquals(end, log.getEndOffset());
+        log.append("work", "carol", 0.25f, 0.5f, 3000L);
+        log.close();
+
+        List<TrustChange> changes = new TrustChangeLogReader(dir).read(0, 10);
+        assertEquals(3, changes.size());
+        assertEquals("carol", changes.get(2).getAlterId());
+        assertEquals(0.25f, changes.get(2).getOldTrust(), 0.f);
+        assertEquals(end, changes.get(2).getOffset());
+    }
+
+    @Test
+    public void failedWrite_isRecoveredAtNextAppend() throws IOException {
+        File dir = folder.newFolder("log");
+        TrustChangeLog log = new TrustChangeLog(dir, 1024 * 1024);
+        log.append("work", "alice", Float.NaN, 0.5f, 1000L);
+        log.flush();
+        long written = log.getEndOffset();
+
+        //An interrupted write fails and closes the channel of the segment
+        log.append("work", "bob", Float.NaN, 0.75f, 2000L);
+        Thread.currentThread().interrupt();
+        try {
+            log.flush();
+            fail("the write should have failed");
+        }
+        catch(IOException e) {
+            //Expected
+        }
+        finally {
+            Thread.interrupted();
+        }
+        //The records that were not written are dropped
+        assertEquals(written, log.getEndOffset());
+
+        log.append("work", "carol", Float.NaN, 0.25f, 3000L);
+        log.close();
+
+        List<TrustChange> changes = new TrustChangeLogReader(dir).read(0, 10);
+        assertEquals(2, changes.size());
+        assertEquals("alice", changes.get(0).getAlterId());
+        assertEquals("carol", changes.get(1).getAlterId());
+        assertEquals(written, changes.get(1).getOffset());
+    }
+
+    @Test
+    public void closedLog_rejectsAppends() throws IOException {
+        File dir = folder.newFolder("log");
+        TrustChangeLog log = new TrustChangeLog(dir, 1024 * 1024);
+        log.append("work", "alice", Float.NaN, 0.5f, 1000L);
+        log.close();
+        log.close();
+
+        try {
+            log.append("work", "bob", Float.NaN, 0.75f, 2000L);
+            fail("a closed log should reject appends");
+        }
+        catch(ClosedChannelException e) {
+            //Expected
+        }
+        assertEquals(1, new TrustChangeLogReader(dir).read(0, 10).size());
+    }
+}
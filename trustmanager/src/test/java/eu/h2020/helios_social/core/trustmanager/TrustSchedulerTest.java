@@ -0,0 +1,162 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import eu.h2020.helios_social.core.contextualegonetwork.Context;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the budgeted scheduler, run on updaters whose cost is simulated.
+ */
+public class TrustSchedulerTest {
+
+    /**
+     * Updater that spends a given time on each update, without any context behind it
+     */
+    static class FakeUpdater extends ContextTrustUpdater {
+        private final long updateNanos;
+        private final int alters;
+        private final boolean fail;
+        private boolean materialized;
+        private long lastDuration;
+        int updates;
+
+        FakeUpdater(long updateNanos, int alters, boolean materialized, boolean fail) {
+            super((Context) null);
+            this.updateNanos = updateNanos;
+            this.alters = alters;
+            this.materialized = materialized;
+            this.fail = fail;
+            if(materialized) lastDuration = updateNanos;
+        }
+
+        @Override
+        protected void initialize() {
+            if(!materialized) spin();
+            materialized = true;
+        }
+
+        @Override
+        protected void scheduledUpdate() {
+            if(fail) throw new IllegalStateException("update failed");
+            lastDuration = spin();
+            updates++;
+        }
+
+        private long spin() {
+            long start = System.nanoTime();
+            while(System.nanoTime() - start < updateNanos);
+            return System.nanoTime() - start;
+        }
+
+        @Override
+        protected boolean isInitialized() {
+            return materialized;
+        }
+
+        @Override
+        protected long getLastUpdateDuration() {
+            return lastDuration;
+        }
+
+        @Override
+        protected int getAlterCount() {
+            return alters;
+        }
+    }
+
+    private static int countUpdates(List<FakeUpdater> updaters) {
+        int count = 0;
+        for(FakeUpdater u: updaters) count += u.updates;
+        return count;
+    }
+
+    @Test
+    public void subMillisecondUpdates_consumeTheBudget() {
+        TrustScheduler scheduler = new TrustScheduler(null, 1);
+        List<FakeUpdater> updaters = new ArrayList<>();
+        for(int i = 0; i < 50; i++) updaters.add(new FakeUpdater(100000, 10, true, false));
+
+        scheduler.runUpdates(new ArrayList<>(updaters));
+
+        //50 updates of 0.1 ms each don't fit in a budget of 1 ms
+        int updates = countUpdates(updaters);
+        assertTrue(updates >= 1);
+        assertTrue("ran " + updates + " updates", updates <= 11);
+        assertEquals(50 - updates, scheduler.getDeferredUpdates());
+    }
+
+    @Test
+    public void firstUpdate_alwaysRuns() {
+        TrustScheduler scheduler = new TrustScheduler(null, 0);
+        List<FakeUpdater> updaters = new ArrayList<>();
+        for(int i = 0; i < 3; i++) updaters.add(new FakeUpdater(10000, 10, true, false));
+
+        scheduler.runUpdates(new ArrayList<>(updaters));
+
+        assertEquals(1, updaters.get(0).updates);
+        assertEquals(1, countUpdates(updaters));
+        assertEquals(2, scheduler.getDeferredUpdates());
+    }
+
+    @Test
+    public void materialization_isEstimatedFromTheMeasuredCostPerAlter() {
+        TrustScheduler scheduler = new TrustScheduler(null, 5);
+        //10 alters in 1 ms: 0.1 ms per alter
+        FakeUpdater measured = new FakeUpdater(1000000, 10, true, false);
+        //100 alters to be materialized and updated: about 20 ms
+        FakeUpdater large = new FakeUpdater(10000, 100, false, false);
+        //5 alters to be materialized and updated: about 1 ms
+        FakeUpdater small = new FakeUpdater(10000, 5, false, false);
+        List<ContextTrustUpdater> pending = new ArrayList<>();
+        pending.add(measured);
+        pending.add(large);
+        pending.add(small);
+
+        scheduler.runUpdates(pending);
+
+        assertEquals(1, measured.updates);
+        assertEquals(0, large.updates);
+        assertFalse(large.isInitialized());
+        assertEquals(1, small.updates);
+        assertEquals(1, scheduler.getDeferredUpdates());
+    }
+
+    @Test
+    public void unmeasuredMaterialization_isDeferredUnlessFirst() {
+        TrustScheduler scheduler = new TrustScheduler(null, 1000);
+        FakeUpdater first = new FakeUpdater(0, 0, false, false);
+        FakeUpdater second = new FakeUpdater(0, 0, false, false);
+        List<ContextTrustUpdater> pending = new ArrayList<>();
+        pending.add(first);
+        pending.add(second);
+
+        scheduler.runUpdates(pending);
+
+        assertEquals(1, first.updates);
+        assertEquals(0, second.updates);
+        assertEquals(1, scheduler.getDeferredUpdates());
+    }
+
+    @Test
+    public void failedUpdate_doesNotStopTheOthers() {
+        ErrorHandler eh = new ErrorHandler();
+        eh.setDevelopment(false);
+        TrustManager.eh = eh;
+        TrustScheduler scheduler = new TrustScheduler(null, 1000);
+        FakeUpdater failing = new FakeUpdater(0, 10, true, true);
+        FakeUpdater working = new FakeUpdater(0, 10, true, false);
+        List<ContextTrustUpdater> pending = new ArrayList<>();
+        pending.add(failing);
+        pending.add(working);
+
+        scheduler.runUpdates(pending);
+
+        assertEquals(1, working.updates);
+        assertEquals(1, eh.getErrorCount(ErrorHandler.ErrorType.OTHER));
+    }
+}
@@ -0,0 +1,68 @@
+package eu.h2020.helios_social.core.trustmanager;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the weights of the trust model parameters, and of the re-scoring of the
+ * parameter scores kept for each alter.
+ */
+public class TrustWeightsTest {
+
+    @Test
+    public void defaults_areUsedForMissingWeights() {
+        TrustWeights w = new TrustWeights(new HashMap<>());
+
+        assertEquals(0.2f * 1 + 0.7f * 1 + 0.1f * 1, w.initialTrust(1, 1, 1), 1e-6f);
+        assertEquals(0.3f * 1 + 0.6f * 1 + 0.1f * 1, w.trust(1, 1, 1), 1e-6f);
+        assertEquals(0.7f, w.initialTrust(0, 1, 0), 1e-6f);
+        assertEquals(0.6f, w.trust(0, 1, 0), 1e-6f);
+    }
+
+    @Test
+    public void chosenWeights_replaceTheDefaults() {
+        HashMap<String, Float> modelWeights = new HashMap<>();
+        modelWeights.put("CommonFriends", 0.5f);
+        modelWeights.put("SentimentAnalysis", 0.25f);
+        modelWeights.put("ProfileSimilarityInit", 0.4f);
+        TrustWeights w = new TrustWeights(modelWeights);
+
+        assertEquals(0.5f, w.trust(1, 0, 0), 1e-6f);
+        assertEquals(0.25f, w.trust(0, 1, 0), 1e-6f);
+        //The weight that is not specified keeps its default
+        assertEquals(0.1f, w.trust(0, 0, 1), 1e-6f);
+        assertEquals(0.4f, w.initialTrust(1, 0, 0), 1e-6f);
+    }
+
+    @Test
+    public void missingProfileSimilarity_isSpreadOnTheOtherInitialWeights() {
+        HashMap<String, Float> modelWeights = new HashMap<>();
+        modelWeights.put("ProfileSimilarityInit", 0.f);
+        TrustWeights w = new TrustWeights(modelWeights);
+
+        assertEquals(0.f, w.initialTrust(1, 0, 0), 1e-6f);
+        assertEquals(0.8f, w.initialTrust(0, 1, 0), 1e-6f);
+        assertEquals(0.2f, w.initialTrust(0, 0, 1), 1e-6f);
+        assertEquals(1.f, w.initialTrust(1, 1, 1), 1e-6f);
+    }
+
+    @Test
+    public void factors_areRescoredWithNewWeights() {
+        HashMap<String, Float> modelWeights = new HashMap<>();
+        TrustWeights defaults = new TrustWeights(modelWeights);
+        modelWeights.put("SentimentAnalysis", 0.f);
+        TrustWeights noSentiment = new TrustWeights(modelWeights);
+
+        ContextTrustUpdater.TrustFactors factors = new ContextTrustUpdater.TrustFactors();
+        factors.set(0.f, 0.5f, 1.f, 0.f, false);
+        assertEquals(0.3f * 0.5f + 0.6f, factors.score(defaults), 1e-6f);
+        assertEquals(0.3f * 0.5f, factors.score(noSentiment), 1e-6f);
+
+        //The scores are replaced in place, switching between the initial and the regular model
+        factors.set(1.f, 0.f, 0.f, 0.f, true);
+        assertEquals(0.2f, factors.score(defaults), 1e-6f);
+    }
+}